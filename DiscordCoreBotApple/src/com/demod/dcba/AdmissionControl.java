@@ -0,0 +1,83 @@
+package com.demod.dcba;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Bounds the number of interactions that have been accepted but not yet
+ * finished. Once the high-water mark is reached new interactions are shed.
+ * Lower priority interaction types are shed earlier, at a proportional
+ * fraction of the mark, so that slash commands keep the remaining capacity.
+ */
+public class AdmissionControl {
+
+	private final int highWaterMark;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final Map<InteractionType, LongAdder> admitted = new EnumMap<>(InteractionType.class);
+	private final Map<InteractionType, LongAdder> shed = new EnumMap<>(InteractionType.class);
+
+	public AdmissionControl(int highWaterMark) {
+		if (highWaterMark < 1) {
+			throw new IllegalArgumentException("highWaterMark must be at least 1");
+		}
+		this.highWaterMark = highWaterMark;
+		for (InteractionType type : InteractionType.values()) {
+			admitted.put(type, new LongAdder());
+			shed.put(type, new LongAdder());
+		}
+	}
+
+	public long getAdmitted(InteractionType type) {
+		return admitted.get(type).sum();
+	}
+
+	public int getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	public long getShed(InteractionType type) {
+		return shed.get(type).sum();
+	}
+
+	public long getShedTotal() {
+		return shed.values().stream().mapToLong(LongAdder::sum).sum();
+	}
+
+	public int getThreshold(InteractionType type) {
+		return (int) Math.max(1,
+				(long) highWaterMark * (type.getPriority() + 1) / (InteractionType.MAX_PRIORITY + 1));
+	}
+
+	public void release() {
+		inFlight.decrementAndGet();
+	}
+
+	public boolean tryAdmit(InteractionType type) {
+		int threshold = getThreshold(type);
+		while (true) {
+			int current = inFlight.get();
+			if (current >= threshold) {
+				shed.get(type).increment();
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				admitted.get(type).increment();
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return inFlight.get() + "/" + highWaterMark + " in flight, shed: "
+				+ shed.entrySet().stream().filter(e -> e.getValue().sum() > 0)
+						.map(e -> e.getKey() + "=" + e.getValue().sum()).collect(Collectors.joining(", "));
+	}
+}
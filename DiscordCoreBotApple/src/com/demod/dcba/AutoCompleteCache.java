@@ -0,0 +1,74 @@
+package com.demod.dcba;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.Command.Choice;
+
+/**
+ * Size-bounded LRU cache of autocomplete results, keyed by command path,
+ * focused option name, typed value and optionally the guild. Only use this
+ * for handlers whose choices depend on nothing else.
+ */
+public class AutoCompleteCache {
+	private static record Key(String path, String option, String value, long guildId) {
+	}
+
+	private final Cache<Key, List<Choice>> cache;
+	private final boolean perGuild;
+
+	public AutoCompleteCache(int maxSize, Duration ttl, boolean perGuild) {
+		this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+		this.perGuild = perGuild;
+	}
+
+	public Optional<List<Choice>> get(String path, CommandAutoCompleteInteractionEvent event) {
+		return Optional.ofNullable(cache.getIfPresent(key(path, event)));
+	}
+
+	public long getHitCount() {
+		return cache.stats().hitCount();
+	}
+
+	public long getMissCount() {
+		return cache.stats().missCount();
+	}
+
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	public boolean isPerGuild() {
+		return perGuild;
+	}
+
+	private Key key(String path, CommandAutoCompleteInteractionEvent event) {
+		long guildId = perGuild && event.getGuild() != null ? event.getGuild().getIdLong() : 0;
+		return new Key(path, event.getFocusedOption().getName(), event.getFocusedOption().getValue(), guildId);
+	}
+
+	public void put(String path, CommandAutoCompleteInteractionEvent event, List<Choice> choices) {
+		cache.put(key(path, event), ImmutableList.copyOf(choices));
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	@Override
+	public String toString() {
+		CacheStats stats = cache.stats();
+		return cache.size() + " entries, " + stats.hitCount() + " hits, " + stats.missCount() + " misses";
+	}
+}
@@ -1,6 +1,9 @@
 package com.demod.dcba;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.interactions.AutoCompleteQuery;
@@ -13,29 +16,37 @@ public class AutoCompleteEvent extends AbstractParamPayloadEvent {
 	//TODO refactor autocomplete to be its own event that is contextualized by DCBA per parameter, not per command
 	private AutoCompleteQuery focusedOption;
 
+	private Optional<List<Choice>> choices = Optional.empty();
+
 	public AutoCompleteEvent(CommandAutoCompleteInteractionEvent event) {
 		super(event);
 		this.event = event;
 		focusedOption = event.getFocusedOption();
 	}
 
+	Optional<List<Choice>> getChoices() {
+		return choices;
+	}
+
 	public AutoCompleteQuery getFocusedOption() {
 		return focusedOption;
 	}
 
 	public void reply(Collection<String> choices) {
-		event.replyChoiceStrings(choices).complete();
+		replyNamed(choices.stream().map(s -> new Choice(s, s)).collect(Collectors.toList()));
 	}
 
 	public void replyDecimals(Collection<Double> choices) {
-		event.replyChoiceDoubles(choices).complete();
+		replyNamed(choices.stream().map(d -> new Choice(String.valueOf(d), d)).collect(Collectors.toList()));
 	}
 
 	public void replyIntegers(Collection<Long> choices) {
-		event.replyChoiceLongs(choices).complete();
+		replyNamed(choices.stream().map(l -> new Choice(String.valueOf(l), l)).collect(Collectors.toList()));
 	}
 
 	public void replyNamed(Collection<Choice> choices) {
-		event.replyChoices(choices).complete();
+		List<Choice> list = List.copyOf(choices);
+		this.choices = Optional.of(list);
+		event.replyChoices(list).complete();
 	}
 }
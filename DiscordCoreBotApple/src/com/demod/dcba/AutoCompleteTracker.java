@@ -0,0 +1,40 @@
+package com.demod.dcba;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the in-flight autocomplete task of each user, command and option.
+ * When a newer keystroke arrives the older task is cancelled, which skips it
+ * if it has not started yet and interrupts it if it has.
+ */
+public class AutoCompleteTracker {
+	private static record Key(long userId, String path, String option) {
+	}
+
+	private final ConcurrentHashMap<Key, Future<?>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder superseded = new LongAdder();
+
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+	public long getSuperseded() {
+		return superseded.sum();
+	}
+
+	public void track(long userId, String path, String option, DeadlineScheduler.Task<?> task) {
+		Key key = new Key(userId, path, option);
+		Future<?> previous = inFlight.put(key, task);
+		if (previous != null && previous.cancel(true)) {
+			superseded.increment();
+		}
+		task.whenComplete((r, t) -> inFlight.remove(key, task));
+	}
+
+	@Override
+	public String toString() {
+		return inFlight.size() + " in flight, " + superseded.sum() + " superseded";
+	}
+}
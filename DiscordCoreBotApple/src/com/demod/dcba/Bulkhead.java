@@ -0,0 +1,130 @@
+package com.demod.dcba;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits how many interactions of one command (or command group) may run at
+ * once, with its own bounded waiting queue. A slot is held from the moment a
+ * task is started until the stage it returns completes.
+ */
+public class Bulkhead {
+	private static final Logger LOGGER = LoggerFactory.getLogger(Bulkhead.class);
+
+	public static final int DEFAULT_QUEUE_LIMIT = 50;
+
+	private final String name;
+	private final int concurrency;
+	private final int queueLimit;
+
+	private final Deque<Supplier<? extends CompletionStage<?>>> queue = new ArrayDeque<>();
+	private int running;
+	private int peakRunning;
+	private long completed;
+	private long rejected;
+
+	public Bulkhead(String name, int concurrency, int queueLimit) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be at least 1");
+		}
+		if (queueLimit < 0) {
+			throw new IllegalArgumentException("queueLimit must not be negative");
+		}
+		this.name = name;
+		this.concurrency = concurrency;
+		this.queueLimit = queueLimit;
+	}
+
+	public synchronized long getCompleted() {
+		return completed;
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public synchronized int getPeakRunning() {
+		return peakRunning;
+	}
+
+	public synchronized int getQueued() {
+		return queue.size();
+	}
+
+	public int getQueueLimit() {
+		return queueLimit;
+	}
+
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+	public synchronized int getRunning() {
+		return running;
+	}
+
+	public synchronized double getUtilization() {
+		return running / (double) concurrency;
+	}
+
+	/**
+	 * Starts the task now if a slot is free, queues it if the queue has room,
+	 * or returns false if the bulkhead is saturated.
+	 */
+	public boolean offer(Supplier<? extends CompletionStage<?>> task) {
+		synchronized (this) {
+			if (running >= concurrency) {
+				if (queue.size() >= queueLimit) {
+					rejected++;
+					return false;
+				}
+				queue.addLast(task);
+				return true;
+			}
+			running++;
+			peakRunning = Math.max(peakRunning, running);
+		}
+		start(task);
+		return true;
+	}
+
+	private void release() {
+		Supplier<? extends CompletionStage<?>> next;
+		synchronized (this) {
+			completed++;
+			next = queue.pollFirst();
+			if (next == null) {
+				running--;
+				return;
+			}
+		}
+		start(next);
+	}
+
+	private void start(Supplier<? extends CompletionStage<?>> task) {
+		CompletionStage<?> stage;
+		try {
+			stage = task.get();
+		} catch (Exception e) {
+			LOGGER.error("Bulkhead " + name + " task failed to start!", e);
+			release();
+			return;
+		}
+		stage.whenComplete((r, t) -> release());
+	}
+
+	@Override
+	public synchronized String toString() {
+		return name + ": " + running + "/" + concurrency + " running, " + queue.size() + "/" + queueLimit
+				+ " queued, " + rejected + " rejected";
+	}
+}
@@ -0,0 +1,20 @@
+package com.demod.dcba;
+
+public enum CacheProfile {
+	/**
+	 * The intents and caches of {@code JDABuilder.createDefault}, regardless of
+	 * the registered handlers. This is the default, so listeners added through
+	 * a custom setup keep getting their events.
+	 */
+	DEFAULT,
+	/**
+	 * {@code GUILDS} plus the intents the registered handlers need, the caches
+	 * that come without extra intents, and the guild owner in the member cache.
+	 */
+	DERIVED,
+	/**
+	 * Like {@link #DERIVED}, but with every cache flag disabled and no members
+	 * cached.
+	 */
+	LEAN;
+}
@@ -0,0 +1,245 @@
+package com.demod.dcba;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.requests.restaction.CommandListUpdateAction;
+
+/**
+ * Registers command lists with Discord only when they have changed. Every
+ * command is hashed from a canonical (sorted key) form of its JSON and
+ * compared with the commands Discord currently has before anything is pushed.
+ * The hashes of the last successful registration are kept in a local file per
+ * application and scope, to tell what changed and to notice commands that
+ * were changed outside the bot.
+ */
+public class CommandRegistrar {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CommandRegistrar.class);
+
+	private static void canonical(Object value, StringBuilder sb) {
+		if (value instanceof JSONObject) {
+			JSONObject object = (JSONObject) value;
+			sb.append('{');
+			boolean first = true;
+			for (String key : new TreeSet<>(object.keySet())) {
+				if (!first) {
+					sb.append(',');
+				}
+				first = false;
+				sb.append(JSONObject.quote(key)).append(':');
+				canonical(object.get(key), sb);
+			}
+			sb.append('}');
+		} else if (value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			sb.append('[');
+			for (int i = 0; i < array.length(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				canonical(array.get(i), sb);
+			}
+			sb.append(']');
+		} else {
+			sb.append(JSONObject.valueToString(value));
+		}
+	}
+
+	public static String hash(CommandData command) {
+		StringBuilder sb = new StringBuilder();
+		canonical(new JSONObject(new String(command.toData().toJson(), StandardCharsets.UTF_8)), sb);
+		return Hashing.sha256().hashString(sb, StandardCharsets.UTF_8).toString();
+	}
+
+	private static Map<String, String> hashes(List<? extends CommandData> commands) {
+		Map<String, String> ret = new TreeMap<>();
+		for (CommandData command : commands) {
+			ret.put(key(command), hash(command));
+		}
+		return ret;
+	}
+
+	private static String key(CommandData command) {
+		return command.getType() + "/" + command.getName();
+	}
+
+	private final File stateFile;
+	private final String applicationId;
+
+	/**
+	 * @param stateFile
+	 *            may be shared by several applications, each keeps its own
+	 *            state in it
+	 */
+	public CommandRegistrar(File stateFile, long applicationId) {
+		this.stateFile = stateFile;
+		this.applicationId = Long.toUnsignedString(applicationId);
+	}
+
+	private String describeChanges(Map<String, String> previous, Map<String, String> current) {
+		List<String> added = current.keySet().stream().filter(k -> !previous.containsKey(k))
+				.collect(Collectors.toList());
+		List<String> removed = previous.keySet().stream().filter(k -> !current.containsKey(k))
+				.collect(Collectors.toList());
+		List<String> changed = current.entrySet().stream()
+				.filter(e -> previous.containsKey(e.getKey()) && !previous.get(e.getKey()).equals(e.getValue()))
+				.map(Entry::getKey).collect(Collectors.toList());
+		return "added " + added + ", changed " + changed + ", removed " + removed;
+	}
+
+	private synchronized Map<String, String> loadState(String scope) {
+		Map<String, String> ret = new TreeMap<>();
+		JSONObject application = readState().optJSONObject(applicationId);
+		JSONObject scopeJson = application == null ? null : application.optJSONObject(scope);
+		if (scopeJson != null) {
+			for (String key : scopeJson.keySet()) {
+				ret.put(key, scopeJson.getString(key));
+			}
+		}
+		return ret;
+	}
+
+	private JSONObject readState() {
+		if (!stateFile.exists()) {
+			return new JSONObject();
+		}
+		try {
+			return new JSONObject(Files.readString(stateFile.toPath()));
+		} catch (Exception e) {
+			LOGGER.warn("Ignoring unreadable command state " + stateFile, e);
+			return new JSONObject();
+		}
+	}
+
+	/**
+	 * Makes sure Discord has exactly the given commands in the scope, calling
+	 * {@code onRegistered} with the registered commands once they are known.
+	 *
+	 * @param scope
+	 *            name of the command list, used as the key in the state of the
+	 *            application
+	 */
+	public void register(String scope, List<CommandData> commands, Supplier<CommandListUpdateAction> update,
+			Supplier<RestAction<List<Command>>> retrieve, Consumer<List<Command>> onRegistered) {
+		Map<String, String> current = hashes(commands);
+		Map<String, String> saved = loadState(scope);
+
+		retrieve.get().queue(registered -> {
+			Map<String, String> remote = hashes(registered.stream().map(CommandData::fromCommand)
+					.collect(Collectors.toList()));
+			if (remote.equals(current)) {
+				LOGGER.info("Commands for " + scope + (saved.equals(current) ? " are unchanged"
+						: " already match Discord") + ", skipping registration");
+				saveState(scope, current);
+				onRegistered.accept(registered);
+			} else {
+				if (saved.equals(current)) {
+					LOGGER.warn("Commands for " + scope + " were changed outside the bot since they were registered");
+				}
+				update(scope, commands, current, remote, update, onRegistered);
+			}
+		}, t -> {
+			LOGGER.warn("Failed to retrieve commands for " + scope + ", registering them instead", t);
+			update(scope, commands, current, saved, update, onRegistered);
+		});
+	}
+
+	/**
+	 * Brings the commands Discord has in the scope in line with the given ones
+	 * by creating, editing or deleting only the commands that differ, instead of
+	 * replacing the whole list. {@code onRegistered} is called with the
+	 * commands that were created or edited.
+	 */
+	public CompletableFuture<Void> registerChanged(String scope, List<CommandData> commands,
+			Function<CommandData, RestAction<Command>> upsert, Function<String, RestAction<Void>> delete,
+			Supplier<RestAction<List<Command>>> retrieve, Consumer<List<Command>> onRegistered) {
+		Map<String, String> current = hashes(commands);
+		return retrieve.get().submit().thenCompose(registered -> {
+			Map<String, Command> remoteCommands = new TreeMap<>();
+			Map<String, String> remote = new TreeMap<>();
+			for (Command command : registered) {
+				CommandData data = CommandData.fromCommand(command);
+				remoteCommands.put(key(data), command);
+				remote.put(key(data), hash(data));
+			}
+			if (remote.equals(current)) {
+				LOGGER.info("Commands for " + scope + " already match Discord");
+				saveState(scope, current);
+				return CompletableFuture.completedFuture(null);
+			}
+
+			LOGGER.info("Updating commands for " + scope + ": " + describeChanges(remote, current));
+			List<Command> upserted = new CopyOnWriteArrayList<>();
+			List<CompletableFuture<?>> futures = new ArrayList<>();
+			for (CommandData command : commands) {
+				String key = key(command);
+				if (!current.get(key).equals(remote.get(key))) {
+					futures.add(upsert.apply(command).submit().thenAccept(upserted::add));
+				}
+			}
+			for (Entry<String, Command> entry : remoteCommands.entrySet()) {
+				if (!current.containsKey(entry.getKey())) {
+					futures.add(delete.apply(entry.getValue().getId()).submit());
+				}
+			}
+			return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenRun(() -> {
+				saveState(scope, current);
+				onRegistered.accept(upserted);
+			});
+		}).whenComplete((r, t) -> {
+			if (t != null) {
+				LOGGER.error("Failed to update commands for " + scope, t);
+			}
+		});
+	}
+
+	private synchronized void saveState(String scope, Map<String, String> hashes) {
+		JSONObject state = readState();
+		JSONObject application = state.optJSONObject(applicationId);
+		if (application == null) {
+			application = new JSONObject();
+			state.put(applicationId, application);
+		}
+		application.put(scope, new JSONObject(new LinkedHashMap<>(hashes)));
+		try {
+			Files.writeString(stateFile.toPath(), state.toString(2));
+		} catch (IOException e) {
+			LOGGER.warn("Failed to save command state " + stateFile, e);
+		}
+	}
+
+	private void update(String scope, List<CommandData> commands, Map<String, String> current,
+			Map<String, String> previous, Supplier<CommandListUpdateAction> update,
+			Consumer<List<Command>> onRegistered) {
+		LOGGER.info("Registering commands for " + scope + ": " + describeChanges(previous, current));
+		update.get().addCommands(commands).queue(registered -> {
+			saveState(scope, current);
+			onRegistered.accept(registered);
+		}, t -> LOGGER.error("Failed to register commands for " + scope, t));
+	}
+}
@@ -9,11 +9,15 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.LinkedHashMultiset;
 import com.google.common.collect.Multiset;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Message;
@@ -21,10 +25,18 @@ import net.dv8tion.jda.api.entities.Message.Attachment;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.MessageEmbed.Field;
 
+/**
+ * Everything worth reporting about one interaction. Safe to use from several
+ * threads, since a handler that timed out may still be adding to it while the
+ * report is rendered.
+ */
 public class CommandReporting {
 	public static class ExceptionWithBlame {
+		private static final int FINGERPRINT_FRAMES = 5;
+
 		private final Exception e;
 		private final Optional<String> blame;
+		private String fingerprint;
 
 		public ExceptionWithBlame(Exception e, Optional<String> blame) {
 			this.e = e;
@@ -38,6 +50,30 @@ public class CommandReporting {
 		public Exception getException() {
 			return e;
 		}
+
+		/**
+		 * Identifies exceptions that most likely have the same cause: a hash of
+		 * the exception types in the cause chain, the top frames of the root
+		 * cause and the blame. Messages are left out since they often contain
+		 * IDs or other values that differ every time.
+		 */
+		public synchronized String getFingerprint() {
+			if (fingerprint == null) {
+				Hasher hasher = Hashing.murmur3_128().newHasher();
+				Throwable root = e;
+				for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+					hasher.putUnencodedChars(t.getClass().getName()).putChar('\n');
+					root = t;
+				}
+				StackTraceElement[] frames = root.getStackTrace();
+				for (int i = 0; i < Math.min(FINGERPRINT_FRAMES, frames.length); i++) {
+					hasher.putUnencodedChars(frames[i].toString()).putChar('\n');
+				}
+				hasher.putUnencodedChars(blame.orElse(""));
+				fingerprint = hasher.hash().toString().substring(0, 12);
+			}
+			return fingerprint;
+		}
 	}
 
 	public static enum Level {
@@ -54,11 +90,13 @@ public class CommandReporting {
 		}
 	}
 
-	private final String author;
-	private final String authorIconURL;
+	private final Supplier<String> author;
+	private final Supplier<String> authorIconURL;
 	private final Instant commandStart;
+	private Instant commandEnd;
 
-	private String command;
+	private Supplier<String> command;
+	private String commandPath;
 	private String imageURL;
 	private Level level = Level.INFO;
 	private final List<Message> replies = new ArrayList<>();
@@ -69,19 +107,32 @@ public class CommandReporting {
 	private final List<String> replyImageAttachments = new ArrayList<>();
 	private final List<String> replyFileAttachments = new ArrayList<>();
 	private boolean suppressed;
+	private double sampleRate = 1;
+	private boolean sampled = true;
 
 	public CommandReporting(String author, String authorIconURL, Instant commandStart) {
-		this.author = author;
-		this.authorIconURL = authorIconURL;
-		this.commandStart = commandStart;
+		this(Suppliers.ofInstance(author), Suppliers.ofInstance(authorIconURL), Suppliers.ofInstance(null),
+				commandStart);
 	}
 
 	public CommandReporting(String author, String authorIconURL, String command, Instant commandStart) {
-		this(author, authorIconURL, commandStart);
-		this.command = command;
+		this(Suppliers.ofInstance(author), Suppliers.ofInstance(authorIconURL), Suppliers.ofInstance(command),
+				commandStart);
+	}
+
+	/**
+	 * Takes the author and command as suppliers, which are only called (once)
+	 * if the report is actually rendered.
+	 */
+	public CommandReporting(Supplier<String> author, Supplier<String> authorIconURL, Supplier<String> command,
+			Instant commandStart) {
+		this.author = Suppliers.memoize(author::get);
+		this.authorIconURL = Suppliers.memoize(authorIconURL::get);
+		this.command = Suppliers.memoize(command::get);
+		this.commandStart = commandStart;
 	}
 
-	public void addDebug(String message) {
+	public synchronized void addDebug(String message) {
 		debugs.add(message);
 		elevateLevel(Level.DEBUG);
 	}
@@ -95,11 +146,11 @@ public class CommandReporting {
 		elevateLevel(Level.ERROR);
 	}
 
-	public void addField(Field field) {
+	public synchronized void addField(Field field) {
 		fields.add(field);
 	}
 
-	public void addReply(Message message) {
+	public synchronized void addReply(Message message) {
 		replies.add(message);
 		for (MessageEmbed embed : message.getEmbeds()) {
 			if (embed.getImage() != null) {
@@ -115,36 +166,55 @@ public class CommandReporting {
 		}
 	}
 
-	public void addWarning(String message) {
+	public synchronized void addWarning(String message) {
 		warnings.add(message);
 		elevateLevel(Level.WARNING);
 	}
 
-	public void suppress() {
+	public synchronized double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return false if the reporting policy decided not to send this report
+	 */
+	public synchronized boolean isSampled() {
+		return sampled;
+	}
+
+	public synchronized boolean isSuppressed() {
+		return suppressed;
+	}
+
+	public synchronized void suppress() {
 		suppressed = true;
 	}
 
-	public List<MessageEmbed> createEmbeds() {
+	public synchronized List<MessageEmbed> createEmbeds() {
 		if (suppressed) {
 			return ImmutableList.of();
 		}
 		
 		EmbedBuilder builder = new EmbedBuilder();
-		builder.setAuthor(author, null, authorIconURL);
+		builder.setAuthor(author.get(), null, authorIconURL.get());
 		if (commandStart != null) {
 			builder.setTimestamp(commandStart);
 		}
+		if (sampleRate < 1) {
+			builder.setFooter("Sampled at " + (float) (sampleRate * 100) + "%");
+		}
 
 		if (level != Level.INFO) {
 			builder.setColor(level.getColor());
 		}
 
+		String command = this.command.get();
 		if (command != null) {
 			builder.addField("Command", limitContent(250, command), false);
 		}
 
 		if (commandStart != null) {
-			Duration responseTime = Duration.between(commandStart, Instant.now());
+			Duration responseTime = Duration.between(commandStart, commandEnd != null ? commandEnd : Instant.now());
 			builder.addField("Response Time", responseTime.toMillis() + "ms", true);
 		}
 
@@ -163,7 +233,8 @@ public class CommandReporting {
 		if (!exceptions.isEmpty()) {
 			List<String> exceptionMessages = exceptions
 					.stream().map(e -> e.getException().getClass().getSimpleName() + ": "
-							+ e.getException().getMessage() + e.getBlame().map(s -> " (" + s + ")").orElse(""))
+							+ e.getException().getMessage() + e.getBlame().map(s -> " (" + s + ")").orElse("")
+							+ " `" + e.getFingerprint() + "`")
 					.collect(Collectors.toList());
 			builder.addField("Exceptions", limitContent(1000, joinUnique(exceptionMessages)), true);
 			builder.addField("Stack Trace", limitContent(1000, exceptions.stream().map(e -> {
@@ -217,7 +288,7 @@ public class CommandReporting {
 		return embeds;
 	}
 
-	public List<String> createURLList() {
+	public synchronized List<String> createURLList() {
 		if (replyFileAttachments.isEmpty() && replyImageAttachments.isEmpty()) {
 			return ImmutableList.of();
 		}
@@ -233,15 +304,40 @@ public class CommandReporting {
 		}
 	}
 
-	public List<Exception> getExceptions() {
+	/**
+	 * Stops the response time, so a report rendered later still shows how long
+	 * the command took.
+	 */
+	synchronized void finish() {
+		if (commandEnd == null) {
+			commandEnd = Instant.now();
+		}
+	}
+
+	public String getAuthor() {
+		return author.get();
+	}
+
+	public synchronized String getCommand() {
+		return command.get();
+	}
+
+	/**
+	 * @return the path of the slash command, if this reports one
+	 */
+	public synchronized String getCommandPath() {
+		return commandPath;
+	}
+
+	public synchronized List<Exception> getExceptions() {
 		return exceptions.stream().map(ExceptionWithBlame::getException).collect(Collectors.toList());
 	}
 
-	public List<ExceptionWithBlame> getExceptionsWithBlame() {
-		return exceptions;
+	public synchronized List<ExceptionWithBlame> getExceptionsWithBlame() {
+		return ImmutableList.copyOf(exceptions);
 	}
 
-	public Level getLevel() {
+	public synchronized Level getLevel() {
 		return level;
 	}
 
@@ -260,19 +356,38 @@ public class CommandReporting {
 		}
 	}
 
-	public void setAttention() {
+	/**
+	 * Opens a {@link TaskScope} from inside the handler this reporting was
+	 * passed to, for handlers that have no {@link SlashCommandEvent}.
+	 *
+	 * @throws IllegalStateException if called outside of that handler
+	 */
+	public TaskScope openScope() {
+		return TaskScope.open(this);
+	}
+
+	public synchronized void setAttention() {
 		elevateLevel(Level.ATTENTION);
 	}
 
-	public void setCommand(String command) {
-		this.command = command;
+	public synchronized void setCommand(String command) {
+		this.command = Suppliers.ofInstance(command);
 	}
 
-	public void setImageURL(String imageURL) {
+	public synchronized void setCommandPath(String commandPath) {
+		this.commandPath = commandPath;
+	}
+
+	public synchronized void setImageURL(String imageURL) {
 		this.imageURL = imageURL;
 	}
 
-	public void setLevel(Level level) {
+	public synchronized void setLevel(Level level) {
 		this.level = level;
 	}
+
+	public synchronized void setSampling(double sampleRate, boolean sampled) {
+		this.sampleRate = sampleRate;
+		this.sampled = sampled;
+	}
 }
\ No newline at end of file
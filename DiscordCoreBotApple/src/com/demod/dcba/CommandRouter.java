@@ -0,0 +1,173 @@
+package com.demod.dcba;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.collect.ImmutableMap;
+
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.CommandInteractionPayload;
+
+/**
+ * Immutable routing table from an incoming command interaction to its
+ * {@link SlashCommandDefinition}. Commands are looked up by Discord's command
+ * ID once the registered commands are known (by name until then), then by
+ * subcommand group and subcommand name, so routing does not build any
+ * strings. IDs are kept in a sorted primitive array so the lookup does not box
+ * either.
+ * <p>
+ * Binding IDs or changing the commands returns a new router, so the bot swaps
+ * in the whole table at once and a late bind never lands on a replaced one.
+ */
+public class CommandRouter {
+	private static class IdTable {
+		private final long[] ids;
+		private final Node[] nodes;
+
+		private IdTable(long[] ids, Node[] nodes) {
+			this.ids = ids;
+			this.nodes = nodes;
+		}
+	}
+
+	private static class Node {
+		private final SlashCommandDefinition command;
+		private final ImmutableMap<String, Node> children;
+
+		private Node(SlashCommandDefinition command, ImmutableMap<String, Node> children) {
+			this.command = command;
+			this.children = children;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Node freeze(Object value) {
+		if (value instanceof SlashCommandDefinition) {
+			return new Node((SlashCommandDefinition) value, ImmutableMap.of());
+		}
+		ImmutableMap.Builder<String, Node> children = ImmutableMap.builder();
+		for (Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+			children.put(entry.getKey(), freeze(entry.getValue()));
+		}
+		return new Node(null, children.build());
+	}
+
+	private final ImmutableMap<String, Node> roots;
+	private final IdTable idTable;
+
+	@SuppressWarnings("unchecked")
+	public CommandRouter(Collection<SlashCommandDefinition> commands) {
+		Map<String, Object> tree = new LinkedHashMap<>();
+		for (SlashCommandDefinition command : commands) {
+			String[] parts = command.getPath().split("/");
+			Map<String, Object> level = tree;
+			for (int i = 0; i < parts.length - 1; i++) {
+				Object child = level.computeIfAbsent(parts[i], k -> new LinkedHashMap<String, Object>());
+				if (!(child instanceof Map)) {
+					throw new IllegalStateException("Command /" + command.getPath() + " is nested under command /"
+							+ String.join("/", Arrays.copyOf(parts, i + 1)) + "!");
+				}
+				level = (Map<String, Object>) child;
+			}
+			if (level.putIfAbsent(parts[parts.length - 1], command) != null) {
+				throw new IllegalStateException("Command /" + command.getPath() + " conflicts with another command!");
+			}
+		}
+		ImmutableMap.Builder<String, Node> roots = ImmutableMap.builder();
+		for (Entry<String, Object> entry : tree.entrySet()) {
+			roots.put(entry.getKey(), freeze(entry.getValue()));
+		}
+		this.roots = roots.build();
+		idTable = new IdTable(new long[0], new Node[0]);
+	}
+
+	private CommandRouter(ImmutableMap<String, Node> roots, IdTable idTable) {
+		this.roots = roots;
+		this.idTable = idTable;
+	}
+
+	/**
+	 * Records the IDs Discord assigned to the registered commands. May be
+	 * called once per command list (global and any guild lists).
+	 *
+	 * @return a router with these IDs bound as well
+	 */
+	public CommandRouter bind(List<Command> commands) {
+		Map<Long, Node> merged = new LinkedHashMap<>();
+		for (int i = 0; i < idTable.ids.length; i++) {
+			merged.put(idTable.ids[i], idTable.nodes[i]);
+		}
+		for (Command command : commands) {
+			Node node = roots.get(command.getName());
+			if (node != null && command.getType() == Command.Type.SLASH) {
+				merged.put(command.getIdLong(), node);
+			}
+		}
+
+		long[] ids = merged.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+		Node[] nodes = new Node[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			nodes[i] = merged.get(ids[i]);
+		}
+		return new CommandRouter(roots, new IdTable(ids, nodes));
+	}
+
+	public int getBoundCount() {
+		return idTable.ids.length;
+	}
+
+	/**
+	 * Keeps the IDs the previous router bound to top level commands that are
+	 * still present, for a router built from a changed set of commands.
+	 *
+	 * @return a router with the commands of this one and the kept IDs bound
+	 */
+	public CommandRouter withBindings(CommandRouter previous) {
+		Map<Node, String> names = new IdentityHashMap<>();
+		previous.roots.forEach((name, node) -> names.put(node, name));
+		IdTable previousTable = previous.idTable;
+		long[] ids = new long[previousTable.ids.length];
+		Node[] nodes = new Node[previousTable.ids.length];
+		int count = 0;
+		for (int i = 0; i < previousTable.ids.length; i++) {
+			Node node = roots.get(names.get(previousTable.nodes[i]));
+			if (node != null) {
+				ids[count] = previousTable.ids[i];
+				nodes[count] = node;
+				count++;
+			}
+		}
+		return new CommandRouter(roots, new IdTable(Arrays.copyOf(ids, count), Arrays.copyOf(nodes, count)));
+	}
+	/**
+	 * @return the command the interaction invokes, or null if this bot does not
+	 *         know it (for example a stale registration after an update)
+	 */
+	public SlashCommandDefinition route(CommandInteractionPayload interaction) {
+		int index = Arrays.binarySearch(idTable.ids, interaction.getCommandIdLong());
+		Node node = index >= 0 ? idTable.nodes[index] : roots.get(interaction.getName());
+		if (node == null) {
+			return null;
+		}
+		String group = interaction.getSubcommandGroup();
+		if (group != null) {
+			node = node.children.get(group);
+			if (node == null) {
+				return null;
+			}
+		}
+		String subcommand = interaction.getSubcommandName();
+		if (subcommand != null) {
+			node = node.children.get(subcommand);
+			if (node == null) {
+				return null;
+			}
+		}
+		return node.command;
+	}
+}
@@ -1,5 +1,8 @@
 package com.demod.dcba;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -8,6 +11,8 @@ import com.demod.dcba.ReactionWatcher.SimpleWatcher;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
 
 public final class DCBA {
 
@@ -29,19 +34,86 @@ public final class DCBA {
 		SlashCommandBuilder addSlashCommand(String path, String description, SlashCommandHandler commandhandler,
 				AutoCompleteHandler autoCompleteHandler);
 
+		Builder addSlashCommands(Collection<SlashCommandDefinition> commands);
+
 		Builder addStringSelectHandler(StringSelectHandler handler);
 
 		Builder setPrivateMessageHandler(PrivateMessageHandler handler);
 
+		Builder admissionLimit(int highWaterMark);
+
 		Builder async(boolean async);
 
+		/**
+		 * How much of the guild state JDA caches. Defaults to
+		 * {@link CacheProfile#DEFAULT}, {@link CacheProfile#DERIVED} only
+		 * subscribes to what the registered handlers need.
+		 */
+		Builder cacheProfile(CacheProfile profile);
+
+		Builder commandTimeout(Duration timeout);
+
+		/**
+		 * Runs as one process of a sharded cluster, with the shards of this
+		 * process assigned by the coordinator.
+		 */
+		Builder coordinator(ShardCoordinator coordinator);
+
 		DiscordBot create();
 
+		/**
+		 * Reports the first occurrence of an exception right away, and repeats
+		 * of it as one summary per window. {@link Duration#ZERO} reports every
+		 * occurrence.
+		 */
+		Builder errorAggregation(Duration window);
+
+		Builder executorPerShard(boolean executorPerShard);
+
+		Builder keyedSerial(boolean keyedSerial);
+
+		/**
+		 * Size of the queue reports wait in, and the number of threads sending
+		 * them. Reports that do not fit are dropped.
+		 */
+		Builder reportQueue(int capacity, int senders);
+
+		/**
+		 * Samples and routes reports by level and command. By default every
+		 * report goes to every destination.
+		 */
+		Builder reportingPolicy(ReportingPolicy policy);
+
+		Builder serialKey(InteractionType type, SerialKey serialKey);
+
 		InfoBuilder setInfo(String botName);
 
 		Builder setMessageContextHandler(String label, MessageContextHandler handler);
 
+		/**
+		 * Connects through a {@link net.dv8tion.jda.api.sharding.ShardManager}
+		 * instead of a single JDA. Use -1 for the shard count Discord
+		 * recommends.
+		 */
+		Builder sharding(int shardsTotal);
+
+		Builder shards(int minShardId, int maxShardId);
+
+		Builder shutdownTimeout(Duration timeout);
+
+		Builder userRateLimit(int permits, Duration period);
+
+		Builder virtualThreads(int maxConcurrency);
+
 		Builder withCustomSetup(Function<JDABuilder, JDABuilder> customSetup);
+
+		Builder withCustomShardSetup(Function<DefaultShardManagerBuilder, DefaultShardManagerBuilder> customSetup);
+
+		/**
+		 * Intents needed by listeners added through a custom setup, on top of
+		 * those derived from the registered handlers.
+		 */
+		Builder withGatewayIntents(GatewayIntent... intents);
 	}
 
 	private abstract static class AbstractBuilderDeferred implements Builder {
@@ -77,6 +149,11 @@ public final class DCBA {
 			return builder.addSlashCommand(path, description, commandhandler, autoCompleteHandler);
 		}
 
+		@Override
+		public Builder addSlashCommands(Collection<SlashCommandDefinition> commands) {
+			return builder.addSlashCommands(commands);
+		}
+
 		@Override
 		public Builder addStringSelectHandler(StringSelectHandler handler) {
 			return builder.addStringSelectHandler(handler);
@@ -87,16 +164,66 @@ public final class DCBA {
 			return builder.setPrivateMessageHandler(handler);
 		}
 
+		@Override
+		public Builder admissionLimit(int highWaterMark) {
+			return builder.admissionLimit(highWaterMark);
+		}
+
 		@Override
 		public Builder async(boolean async) {
 			return builder.async(async);
 		}
 
+		@Override
+		public Builder cacheProfile(CacheProfile profile) {
+			return builder.cacheProfile(profile);
+		}
+
+		@Override
+		public Builder commandTimeout(Duration timeout) {
+			return builder.commandTimeout(timeout);
+		}
+
+		@Override
+		public Builder coordinator(ShardCoordinator coordinator) {
+			return builder.coordinator(coordinator);
+		}
+
 		@Override
 		public DiscordBot create() {
 			return builder.create();
 		}
 
+		@Override
+		public Builder errorAggregation(Duration window) {
+			return builder.errorAggregation(window);
+		}
+
+		@Override
+		public Builder executorPerShard(boolean executorPerShard) {
+			return builder.executorPerShard(executorPerShard);
+		}
+
+		@Override
+		public Builder keyedSerial(boolean keyedSerial) {
+			return builder.keyedSerial(keyedSerial);
+		}
+
+		@Override
+		public Builder reportQueue(int capacity, int senders) {
+			return builder.reportQueue(capacity, senders);
+		}
+
+		@Override
+		public Builder reportingPolicy(ReportingPolicy policy) {
+			return builder.reportingPolicy(policy);
+		}
+
+		@Override
+		public Builder serialKey(InteractionType type, SerialKey serialKey) {
+			return builder.serialKey(type, serialKey);
+		}
+
 		@Override
 		public InfoBuilder setInfo(String botName) {
 			return builder.setInfo(botName);
@@ -107,11 +234,47 @@ public final class DCBA {
 			return builder.setMessageContextHandler(label, handler);
 		}
 
+		@Override
+		public Builder sharding(int shardsTotal) {
+			return builder.sharding(shardsTotal);
+		}
+
+		@Override
+		public Builder shards(int minShardId, int maxShardId) {
+			return builder.shards(minShardId, maxShardId);
+		}
+
+		@Override
+		public Builder shutdownTimeout(Duration timeout) {
+			return builder.shutdownTimeout(timeout);
+		}
+
+		@Override
+		public Builder userRateLimit(int permits, Duration period) {
+			return builder.userRateLimit(permits, period);
+		}
+
+		@Override
+		public Builder virtualThreads(int maxConcurrency) {
+			return builder.virtualThreads(maxConcurrency);
+		}
+
 		@Override
 		public Builder withCustomSetup(Function<JDABuilder, JDABuilder> customSetup) {
 			return builder.withCustomSetup(customSetup);
 		}
 
+		@Override
+		public Builder withCustomShardSetup(
+				Function<DefaultShardManagerBuilder, DefaultShardManagerBuilder> customSetup) {
+			return builder.withCustomShardSetup(customSetup);
+		}
+
+		@Override
+		public Builder withGatewayIntents(GatewayIntent... intents) {
+			return builder.withGatewayIntents(intents);
+		}
+
 	}
 
 	private static class BuilderImpl implements InfoBuilder {
@@ -156,6 +319,16 @@ public final class DCBA {
 			return slashCommandBuilder;
 		}
 
+		@Override
+		public Builder addSlashCommands(Collection<SlashCommandDefinition> commands) {
+			if (slashCommandBuilder.command != null) {
+				bot.addCommand(slashCommandBuilder.command);
+				slashCommandBuilder.command = null;
+			}
+			commands.forEach(bot::addCommand);
+			return this;
+		}
+
 		@Override
 		public Builder addStringSelectHandler(StringSelectHandler handler) {
 			bot.setStringSelectHandler(Optional.of(handler));
@@ -168,12 +341,36 @@ public final class DCBA {
 			return this;
 		}
 
+		@Override
+		public Builder admissionLimit(int highWaterMark) {
+			bot.setAdmissionLimit(highWaterMark);
+			return this;
+		}
+
 		@Override
 		public Builder async(boolean async) {
 			bot.setAsync(async);
 			return this;
 		}
 
+		@Override
+		public Builder cacheProfile(CacheProfile profile) {
+			bot.setCacheProfile(profile);
+			return this;
+		}
+
+		@Override
+		public Builder commandTimeout(Duration timeout) {
+			bot.setCommandTimeout(Optional.of(timeout));
+			return this;
+		}
+
+		@Override
+		public Builder coordinator(ShardCoordinator coordinator) {
+			bot.setCoordinator(Optional.of(coordinator));
+			return this;
+		}
+
 		@Override
 		public DiscordBot create() {
 			if (slashCommandBuilder.command != null) {
@@ -184,6 +381,42 @@ public final class DCBA {
 			return bot;
 		}
 
+		@Override
+		public Builder errorAggregation(Duration window) {
+			bot.setErrorAggregationWindow(window);
+			return this;
+		}
+
+		@Override
+		public Builder executorPerShard(boolean executorPerShard) {
+			bot.setExecutorPerShard(executorPerShard);
+			return this;
+		}
+
+		@Override
+		public Builder keyedSerial(boolean keyedSerial) {
+			bot.setKeyedSerial(keyedSerial);
+			return this;
+		}
+
+		@Override
+		public Builder reportQueue(int capacity, int senders) {
+			bot.setReportQueue(capacity, senders);
+			return this;
+		}
+
+		@Override
+		public Builder reportingPolicy(ReportingPolicy policy) {
+			bot.setReportingPolicy(policy);
+			return this;
+		}
+
+		@Override
+		public Builder serialKey(InteractionType type, SerialKey serialKey) {
+			bot.setSerialKey(type, serialKey);
+			return this;
+		}
+
 		@Override
 		public InfoBuilder setInfo(String botName) {
 			bot.getInfo().setBotName(Optional.of(botName));
@@ -197,6 +430,36 @@ public final class DCBA {
 			return this;
 		}
 
+		@Override
+		public Builder sharding(int shardsTotal) {
+			bot.setShardsTotal(shardsTotal);
+			return this;
+		}
+
+		@Override
+		public Builder shards(int minShardId, int maxShardId) {
+			bot.setShardRange(minShardId, maxShardId);
+			return this;
+		}
+
+		@Override
+		public Builder shutdownTimeout(Duration timeout) {
+			bot.setShutdownTimeout(timeout);
+			return this;
+		}
+
+		@Override
+		public Builder userRateLimit(int permits, Duration period) {
+			bot.setUserRateLimiter(new RateLimiter(permits, period));
+			return this;
+		}
+
+		@Override
+		public Builder virtualThreads(int maxConcurrency) {
+			bot.setVirtualThreads(maxConcurrency);
+			return this;
+		}
+
 		@Override
 		public InfoBuilder withCredits(String group, String... names) {
 			bot.getInfo().addCredits(group, names);
@@ -215,6 +478,19 @@ public final class DCBA {
 			return this;
 		}
 
+		@Override
+		public Builder withCustomShardSetup(
+				Function<DefaultShardManagerBuilder, DefaultShardManagerBuilder> customSetup) {
+			bot.setCustomShardSetup(customSetup);
+			return this;
+		}
+
+		@Override
+		public Builder withGatewayIntents(GatewayIntent... intents) {
+			bot.addGatewayIntents(Arrays.asList(intents));
+			return this;
+		}
+
 		@Override
 		public InfoBuilder withInvite(Permission... permissions) {
 			bot.getInfo().setAllowInvite(true);
@@ -266,12 +542,24 @@ public final class DCBA {
 	public static interface SlashCommandBuilder extends Builder {
 		SlashCommandBuilder adminOnly();
 
+		SlashCommandBuilder bulkhead(String group);
+
+		SlashCommandBuilder cacheAutoComplete(int maxSize, Duration ttl, boolean perGuild);
+
+		SlashCommandBuilder concurrency(int concurrency);
+
 		SlashCommandBuilder ephemeral();
 
 		SlashCommandBuilder guildChannelOnly();
 
 		SlashCommandBuilder privateChannelOnly();
 
+		SlashCommandBuilder queueLimit(int queueLimit);
+
+		SlashCommandBuilder rateLimit(int permits, Duration period);
+
+		SlashCommandBuilder timeout(Duration timeout);
+
 		SlashCommandBuilder withAutoParam(OptionType type, String name, String description);
 
 		SlashCommandBuilder withOptionalAutoParam(OptionType type, String name, String description);
@@ -281,6 +569,13 @@ public final class DCBA {
 		SlashCommandBuilder withoutReporting();
 
 		SlashCommandBuilder withParam(OptionType type, String name, String description);
+
+		/**
+		 * Declares a record the handler binds its options into with
+		 * {@link SlashCommandEvent#bindParams(Class)}. The record is checked
+		 * against the options when the bot is created.
+		 */
+		SlashCommandBuilder withParams(Class<? extends Record> params);
 	}
 
 	private static class SlashCommandBuilderImpl extends AbstractBuilderDeferred implements SlashCommandBuilder {
@@ -297,6 +592,24 @@ public final class DCBA {
 			return this;
 		}
 
+		@Override
+		public SlashCommandBuilder bulkhead(String group) {
+			command.setBulkheadGroup(Optional.of(group));
+			return this;
+		}
+
+		@Override
+		public SlashCommandBuilder cacheAutoComplete(int maxSize, Duration ttl, boolean perGuild) {
+			command.setAutoCompleteCache(Optional.of(new AutoCompleteCache(maxSize, ttl, perGuild)));
+			return this;
+		}
+
+		@Override
+		public SlashCommandBuilder concurrency(int concurrency) {
+			command.setConcurrency(concurrency);
+			return this;
+		}
+
 		@Override
 		public SlashCommandBuilder ephemeral() {
 			command.setRestriction(CommandRestriction.EPHEMERAL);
@@ -317,6 +630,24 @@ public final class DCBA {
 			return this;
 		}
 
+		@Override
+		public SlashCommandBuilder queueLimit(int queueLimit) {
+			command.setQueueLimit(queueLimit);
+			return this;
+		}
+
+		@Override
+		public SlashCommandBuilder rateLimit(int permits, Duration period) {
+			command.setRateLimiter(Optional.of(new RateLimiter(permits, period)));
+			return this;
+		}
+
+		@Override
+		public SlashCommandBuilder timeout(Duration timeout) {
+			command.setTimeout(Optional.of(timeout));
+			return this;
+		}
+
 		@Override
 		public SlashCommandBuilder withAutoParam(OptionType type, String name, String description) {
 			command.addOption(new SlashCommandOptionDefinition(type, name, description, true, true));
@@ -347,6 +678,12 @@ public final class DCBA {
 			return this;
 		}
 
+		@Override
+		public SlashCommandBuilder withParams(Class<? extends Record> params) {
+			command.addParamType(params);
+			return this;
+		}
+
 	}
 
 	public static Builder builder() {
@@ -0,0 +1,333 @@
+package com.demod.dcba;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs interaction tasks earliest-deadline-first on top of an executor. At
+ * most {@code parallelism} tasks are handed to the executor at once, the rest
+ * wait in a priority queue. Tasks whose deadline has passed by the time they
+ * would start are dropped and counted instead of being run. Tasks with a
+ * timeout are failed and interrupted if they run for longer than that.
+ */
+public class DeadlineScheduler {
+	public class Task<T> extends CompletableFuture<T> implements Comparable<Task<?>> {
+		private final InteractionType type;
+		private final Instant deadline;
+		private final Optional<Duration> timeout;
+		private final long sequence;
+		private final Callable<T> callable;
+
+		private final Object runnerLock = new Object();
+		private Thread runner;
+		private final CompletableFuture<Void> exited = new CompletableFuture<>();
+
+		private Task(InteractionType type, Instant deadline, Optional<Duration> timeout, long sequence,
+				Callable<T> callable) {
+			this.type = type;
+			this.deadline = deadline;
+			this.timeout = timeout;
+			this.sequence = sequence;
+			this.callable = callable;
+			whenComplete((r, t) -> {
+				synchronized (runnerLock) {
+					if (runner == null) {
+						exited.complete(null);
+					}
+				}
+			});
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled && mayInterruptIfRunning) {
+				interruptRunner();
+			}
+			return cancelled;
+		}
+
+		@Override
+		public int compareTo(Task<?> o) {
+			int ret = deadline.compareTo(o.deadline);
+			if (ret == 0) {
+				ret = Long.compare(sequence, o.sequence);
+			}
+			return ret;
+		}
+
+		public Instant getDeadline() {
+			return deadline;
+		}
+
+		public Optional<Duration> getTimeout() {
+			return timeout;
+		}
+
+		public InteractionType getType() {
+			return type;
+		}
+
+		private void interruptRunner() {
+			synchronized (runnerLock) {
+				if (runner != null) {
+					runner.interrupt();
+				}
+			}
+		}
+
+		public boolean isExpired() {
+			return Instant.now().isAfter(deadline);
+		}
+
+		public boolean isRunning() {
+			synchronized (runnerLock) {
+				return runner != null;
+			}
+		}
+
+		private void run() {
+			synchronized (runnerLock) {
+				if (isDone()) {
+					return;
+				}
+				runner = Thread.currentThread();
+			}
+			ScheduledFuture<?> watchdog = timeout
+					.map(t -> WATCHDOG.schedule(this::timeOut, t.toNanos(), TimeUnit.NANOSECONDS))
+					.orElse(null);
+			CURRENT_TASK.set(this);
+			try {
+				complete(callable.call());
+			} catch (Throwable e) {
+				completeExceptionally(e);
+			} finally {
+				CURRENT_TASK.remove();
+				if (watchdog != null) {
+					watchdog.cancel(false);
+				}
+				synchronized (runnerLock) {
+					runner = null;
+				}
+				// Do not leak an interrupt meant for this task into the next one
+				Thread.interrupted();
+				exited.complete(null);
+			}
+		}
+
+		private void timeOut() {
+			if (completeExceptionally(
+					new TimeoutException("Timed out after " + timeout.get().toMillis() + " ms"))) {
+				timedOut.get(type).increment();
+				LOGGER.warn("Interrupting " + type + " task that timed out after " + timeout.get());
+				interruptRunner();
+			}
+		}
+
+		/**
+		 * Completes once the task is done and no thread is running it anymore. A
+		 * task that timed out is done right away, but its thread may take a
+		 * while to react to the interrupt.
+		 */
+		public CompletableFuture<Void> whenExited() {
+			return exited;
+		}
+	}
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineScheduler.class);
+	private static final ThreadLocal<Task<?>> CURRENT_TASK = new ThreadLocal<>();
+	// Shared by every scheduler, it only fires timeouts so one daemon thread is
+	// enough and nothing has to shut it down
+	private static final ScheduledExecutorService WATCHDOG = createWatchdog();
+
+	private static ScheduledExecutorService createWatchdog() {
+		ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1,
+				new ThreadFactoryBuilder().setNameFormat("dcba-watchdog-%d").setDaemon(true).build());
+		// Most tasks finish in time, do not keep their cancelled timeouts around
+		watchdog.setRemoveOnCancelPolicy(true);
+		return watchdog;
+	}
+
+	static Optional<Task<?>> currentTask() {
+		return Optional.ofNullable(CURRENT_TASK.get());
+	}
+
+	private final Executor executor;
+	private final int parallelism;
+
+	private final PriorityBlockingQueue<Task<?>> queue = new PriorityBlockingQueue<>();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicLong sequence = new AtomicLong();
+	private final Map<InteractionType, LongAdder> expired = new EnumMap<>(InteractionType.class);
+	private final Map<InteractionType, LongAdder> timedOut = new EnumMap<>(InteractionType.class);
+	private volatile boolean shutdown;
+
+	public DeadlineScheduler(Executor executor, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		}
+		this.executor = executor;
+		this.parallelism = parallelism;
+		for (InteractionType type : InteractionType.values()) {
+			expired.put(type, new LongAdder());
+			timedOut.put(type, new LongAdder());
+		}
+	}
+
+	private void dispatch() {
+		while (true) {
+			int current = running.get();
+			if (current >= parallelism) {
+				return;
+			}
+			if (!running.compareAndSet(current, current + 1)) {
+				continue;
+			}
+
+			Task<?> task = queue.poll();
+			if (task == null) {
+				running.decrementAndGet();
+				if (queue.isEmpty()) {
+					return;
+				}
+				continue;
+			}
+
+			if (task.isDone()) {
+				running.decrementAndGet();
+				continue;
+			}
+
+			if (task.isExpired()) {
+				expire(task);
+				running.decrementAndGet();
+				continue;
+			}
+
+			try {
+				executor.execute(() -> {
+					try {
+						if (task.isExpired()) {
+							expire(task);
+						} else {
+							task.run();
+						}
+					} finally {
+						running.decrementAndGet();
+						dispatch();
+					}
+				});
+			} catch (RuntimeException e) {
+				running.decrementAndGet();
+				task.completeExceptionally(e);
+			}
+		}
+	}
+
+	private void expire(Task<?> task) {
+		expired.get(task.getType()).increment();
+		LOGGER.debug("Dropped expired " + task.getType() + " task, deadline was " + task.getDeadline());
+		task.completeExceptionally(new CancellationException("Deadline expired at " + task.getDeadline()));
+	}
+
+	private void reject(Task<?> task) {
+		task.completeExceptionally(new RejectedExecutionException("Scheduler is shutting down"));
+	}
+
+	public long getExpired(InteractionType type) {
+		return expired.get(type).sum();
+	}
+
+	public long getExpiredTotal() {
+		return expired.values().stream().mapToLong(LongAdder::sum).sum();
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public int getQueued() {
+		return queue.size();
+	}
+
+	public int getRunning() {
+		return running.get();
+	}
+
+	public long getTimedOut(InteractionType type) {
+		return timedOut.get(type).sum();
+	}
+
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	/**
+	 * Stops accepting tasks. Tasks that are still queued, and any submitted
+	 * from now on, are completed with a {@link RejectedExecutionException}.
+	 * Running tasks are left to finish.
+	 *
+	 * @return the queued tasks that were rejected
+	 */
+	public List<Task<?>> shutdown() {
+		shutdown = true;
+		List<Task<?>> rejected = new ArrayList<>();
+		queue.drainTo(rejected);
+		rejected.forEach(this::reject);
+		return rejected;
+	}
+
+	public <T> Task<T> submit(InteractionType type, Instant deadline, Callable<T> callable) {
+		return submit(type, deadline, Optional.empty(), callable);
+	}
+
+	public <T> Task<T> submit(InteractionType type, Instant deadline, Optional<Duration> timeout,
+			Callable<T> callable) {
+		Task<T> task = new Task<>(type, deadline, timeout, sequence.getAndIncrement(), callable);
+		queue.add(task);
+		if (shutdown && queue.remove(task)) {
+			reject(task);
+			return task;
+		}
+		dispatch();
+		return task;
+	}
+
+	public Task<Void> submit(InteractionType type, Instant deadline, Runnable runnable) {
+		return submit(type, deadline, () -> {
+			runnable.run();
+			return null;
+		});
+	}
+
+	@Override
+	public String toString() {
+		return running.get() + "/" + parallelism + " running, " + queue.size() + " queued, "
+				+ getExpiredTotal() + " expired, " + timedOut.values().stream().mapToLong(LongAdder::sum).sum()
+				+ " timed out";
+	}
+}
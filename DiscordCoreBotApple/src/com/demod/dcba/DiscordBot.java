@@ -1,26 +1,42 @@
 package com.demod.dcba;
 
 import java.awt.Color;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.json.JSONException;
@@ -28,20 +44,23 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.demod.dcba.ReportingPolicy.Destination;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.Message.Attachment;
 import net.dv8tion.jda.api.entities.MessageEmbed.Field;
 import net.dv8tion.jda.api.entities.channel.ChannelType;
-import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
-import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.events.channel.ChannelDeleteEvent;
 import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.MessageContextInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
@@ -53,8 +72,13 @@ import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
 import net.dv8tion.jda.api.events.message.react.MessageReactionRemoveAllEvent;
 import net.dv8tion.jda.api.events.message.react.MessageReactionRemoveEvent;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
+import net.dv8tion.jda.api.events.session.SessionRecreateEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.callbacks.IReplyCallback;
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.Command.Choice;
 import net.dv8tion.jda.api.interactions.commands.CommandInteractionPayload;
 import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
@@ -63,22 +87,39 @@ import net.dv8tion.jda.api.interactions.commands.build.Commands;
 import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandGroupData;
-import net.dv8tion.jda.api.requests.restaction.CommandListUpdateAction;
-import net.dv8tion.jda.api.utils.FileUpload;
-import net.dv8tion.jda.api.utils.SplitUtil;
-import net.dv8tion.jda.api.utils.SplitUtil.Strategy;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.sharding.ShardManager;
 
 public class DiscordBot extends AbstractIdleService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DiscordBot.class);
 	private static final String COMMAND_INFO = "info";
 	private static final String COMMAND_FEEDBACK = "feedback";
+	private static final String MESSAGE_BUSY = "I am very busy right now, please try again in a moment.";
+	private static final String MESSAGE_RATE_LIMITED = "You are doing that too quickly, please wait a moment...";
+	private static final String MESSAGE_UNKNOWN_COMMAND = "I do not know that command, it may have just been removed.";
+	private static final String MESSAGE_RESTARTING = "I am restarting right now, please try again in a moment.";
+	private static final int SUBTASK_CONCURRENCY = 256;
+	private static final String COMMAND_STATE_FILE = "commands.json";
+	private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(5);
+	private static final Duration SHARD_QUEUE_POLL = Duration.ofSeconds(1);
 
 	private final Map<String, SlashCommandDefinition> commandSlash = new LinkedHashMap<>();
+	private final Object commandLock = new Object();
+	private CommandRegistrar commandRegistrar;
+	private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+	private final AtomicReference<CommandRouter> router = new AtomicReference<>();
 
 	private final InfoDefinition info = new InfoDefinition();
 
-	private ExecutorService commandService;
+	private final List<ExecutorService> commandServices = new CopyOnWriteArrayList<>();
+	private DeadlineScheduler scheduler;
+	private final Map<Integer, DeadlineScheduler> shardSchedulers = new ConcurrentHashMap<>();
+	private DeadlineScheduler subtaskScheduler;
+	private final AutoCompleteTracker autoCompleteTracker = new AutoCompleteTracker();
+	private final KeyedSerialExecutor keyedExecutor = new KeyedSerialExecutor();
+	private final Map<InteractionType, SerialKey> serialKeys = new EnumMap<>(InteractionType.class);
 
 	private Optional<ReactionWatcher> reactionWatcher = Optional.empty();
 	private Optional<ButtonHandler> buttonHandler = Optional.empty();
@@ -90,16 +131,42 @@ public class DiscordBot extends AbstractIdleService {
 	private final JSONObject configJson;
 
 	private JDA jda;
+	private Optional<ShardManager> shardManager = Optional.empty();
+	private int shardsTotal;
+	private Optional<int[]> shardRange = Optional.empty();
+	private boolean executorPerShard;
+	private Optional<ShardCoordinator> coordinator = Optional.empty();
+	private final String memberId = ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+	private ScheduledExecutorService heartbeatService;
+	// Includes the shards still waiting in the start queue of the manager
+	private final Set<Integer> startedShards = ConcurrentHashMap.newKeySet();
 
 	private final LocalDateTime botStarted = LocalDateTime.now();
 
+	private CacheProfile cacheProfile = CacheProfile.DEFAULT;
+	private final Set<GatewayIntent> gatewayIntents = EnumSet.noneOf(GatewayIntent.class);
+	private GatewayProfile gatewayProfile;
 	private Function<JDABuilder, JDABuilder> customSetup;
+	private Function<DefaultShardManagerBuilder, DefaultShardManagerBuilder> customShardSetup;
 
 	private Optional<String> reportingUserID = Optional.empty();
 	private Optional<String> reportingChannelID = Optional.empty();
+	private int reportQueueCapacity = 1000;
+	private int reportSenders = 1;
+	private Duration errorAggregationWindow = Duration.ofMinutes(1);
+	private ReportingPolicy reportingPolicy = new ReportingPolicy();
+	private ReportPipeline reportPipeline;
+	private volatile ReportDestinations reportDestinations;
 
 	private boolean async;
-	private final ConcurrentHashMap<String, Future<?>> activeUsers = new ConcurrentHashMap<>();
+	private boolean keyedSerial;
+	private int virtualThreadConcurrency;
+	private int admissionLimit = Integer.MAX_VALUE;
+	private Optional<Duration> commandTimeout = Optional.empty();
+	private AdmissionControl admissionControl;
+	private RateLimiter userRateLimiter = new RateLimiter(10, Duration.ofSeconds(10));
+	private Duration shutdownTimeout = Duration.ofSeconds(30);
+	private volatile boolean draining;
 
 	DiscordBot() {
 		configJson = loadConfig();
@@ -109,9 +176,62 @@ public class DiscordBot extends AbstractIdleService {
 		commandSlash.put(command.getPath(), command);
 	}
 
+	public void addGatewayIntents(Collection<GatewayIntent> intents) {
+		gatewayIntents.addAll(intents);
+	}
+
+	private boolean admit(InteractionType type, IReplyCallback event) {
+		if (draining) {
+			event.reply(MESSAGE_RESTARTING).setEphemeral(true).queue();
+			return false;
+		}
+		if (admissionControl.tryAdmit(type)) {
+			return true;
+		}
+		LOGGER.debug("Shed " + type + " interaction (" + admissionControl + ")");
+		event.reply(MESSAGE_BUSY).setEphemeral(true).queue();
+		return false;
+	}
+
+	private boolean allow(RateLimiter rateLimiter, IReplyCallback event) {
+		if (rateLimiter.tryAcquire(event.getUser().getIdLong())) {
+			return true;
+		}
+		event.reply(MESSAGE_RATE_LIMITED).setEphemeral(true).queue();
+		return false;
+	}
+
+	private <T> T callInContext(InteractionType type, Instant deadline, CommandReporting reporting,
+			Callable<T> callable) throws Exception {
+		InteractionContext context = new InteractionContext(subtaskScheduler, type, deadline, reporting,
+				DeadlineScheduler.currentTask().map(task -> task));
+		return InteractionContext.call(context, callable);
+	}
+
+	private SlashCommandEvent checkTimeout(SlashCommandEvent commandEvent, Throwable t) {
+		if (t == null) {
+			return commandEvent;
+		}
+		Throwable cause = Throwables.getRootCause(t);
+		if (cause instanceof TimeoutException) {
+			commandEvent.getReporting().addException((TimeoutException) cause, "Timeout");
+			return commandEvent;
+		}
+		if (cause instanceof RejectedExecutionException) {
+			commandEvent.getHook().editOriginal(MESSAGE_RESTARTING).queue();
+		}
+		throw new CompletionException(t);
+	}
+
+	private void bindCommands(List<Command> commands) {
+		// Applied to whichever router is current, even if commands were reloaded meanwhile
+		router.updateAndGet(r -> r.bind(commands));
+	}
+
 	// Hold my beer
 	@SuppressWarnings("unchecked")
-	private void buildUpdateCommands(CommandListUpdateAction updateCommands) {
+	private List<CommandData> buildCommandData() {
+		List<CommandData> ret = new ArrayList<>();
 		Map<String, Object> root = new LinkedHashMap<>();
 
 		for (SlashCommandDefinition command : commandSlash.values()) {
@@ -172,13 +292,13 @@ public class DiscordBot extends AbstractIdleService {
 					}
 				}
 			}
-			updateCommands = updateCommands.addCommands(commandData);
+			ret.add(commandData);
 		}
 
 		if (messageContextHandler.isPresent()) {
-			CommandData commandData = Commands.message(messageContextLabel);
-			updateCommands = updateCommands.addCommands(commandData);
+			ret.add(Commands.message(messageContextLabel));
 		}
+		return ret;
 	}
 
 	private SlashCommandDefinition createCommandFeedback() {
@@ -207,8 +327,8 @@ public class DiscordBot extends AbstractIdleService {
 				info.getBotName().ifPresent(n -> builder.addField("Bot Name", n, true));
 				info.getVersion().ifPresent(v -> builder.addField("Bot Version", v, true));
 				if (info.isAllowInvite()) {
-					builder.addField("Server Invite", "[Link](" + jda.getInviteUrl(info.getInvitePermissions()) + ")",
-							true);
+					findJDA().ifPresent(jda -> builder.addField("Server Invite",
+							"[Link](" + jda.getInviteUrl(info.getInvitePermissions()) + ")", true));
 				}
 				builder.addField("Technologies", info.getTechnologies().stream().collect(Collectors.joining("\n")),
 						false);
@@ -217,10 +337,26 @@ public class DiscordBot extends AbstractIdleService {
 							false);
 				}
 
-				int guildCount = jda.getGuilds().size();
+				long guildCount = getShards().stream().mapToLong(shard -> shard.getGuildCache().size()).sum();
 				String uptimeFormatted = getDurationFormatted(botStarted, LocalDateTime.now());
-				long ping = jda.getGatewayPing();
+				long ping = shardManager.map(m -> Math.round(m.getAverageGatewayPing()))
+						.orElseGet(() -> jda.getGatewayPing());
+				String shards = shardManager
+						.map(m -> m.getShardsRunning() + " of " + m.getShardsTotal() + " running").orElse(null);
+				if (coordinator.isPresent()) {
+					List<ShardStats> clusterStats = coordinator.get().getStats();
+					guildCount = clusterStats.stream().mapToLong(ShardStats::getGuildCount).sum();
+					// Members standing by have no gateway connection to measure
+					ping = Math.round(clusterStats.stream().filter(s -> !s.getShardIds().isEmpty())
+							.mapToLong(ShardStats::getPing).average().orElse(ping));
+					shards = clusterStats.stream().mapToInt(s -> s.getShardIds().size()).sum() + " of "
+							+ shardManager.get().getShardsTotal() + " running in " + clusterStats.size()
+							+ " processes";
+				}
 				builder.addField("Total Servers", guildCount + " servers", true);
+				if (shards != null) {
+					builder.addField("Shards", shards, true);
+				}
 				builder.addField("Uptime", uptimeFormatted, true);
 				builder.addField("Ping to Discord", ping + " ms", true);
 				for (Entry<String, String> entry : info.getCustomFields()) {
@@ -232,66 +368,111 @@ public class DiscordBot extends AbstractIdleService {
 		});
 	}
 
-	private CommandReporting createReporting(CommandInteractionPayload event) {
-		String author;
-		if (event.getChannelType() == ChannelType.PRIVATE) {
-			author = event.getUser().getName();
-		} else {
-			author = event.getGuild().getName() + " / #" + event.getMessageChannel().getName() + " / "
-					+ event.getUser().getName();
+	private SlashCommandEvent createCommandEvent(SlashCommandInteractionEvent event,
+			SlashCommandDefinition commandDefinition, InteractionHook hook, boolean ephemeral, Instant commandStart) {
+		CommandReporting reporting = createReporting(event, commandStart);
+		reporting.setCommandPath(commandDefinition.getPath());
+		if (!commandDefinition.hasRestriction(CommandRestriction.NO_REPORTING)) {
+			commandDefinition.getBulkhead()
+					.ifPresent(b -> reporting.addField(new Field("Bulkhead", b.toString(), true)));
 		}
+		return new SlashCommandEvent(event, Optional.of(commandDefinition), reporting, hook, ephemeral);
+	}
 
-		String authorIconURL = event.getUser().getEffectiveAvatarUrl();
-
-		String command = event.getCommandString();
-		for (OptionMapping optionMapping : event.getOptions()) {
-			if (optionMapping.getType() == OptionType.ATTACHMENT) {
-				command += " " + optionMapping.getAsAttachment().getUrl();
-			}
+	private DeadlineScheduler createScheduler(String namePrefix) {
+		ExecutorService commandService;
+		DeadlineScheduler ret;
+		if (virtualThreadConcurrency > 0) {
+			commandService = new VirtualThreadExecutor(namePrefix, virtualThreadConcurrency);
+			ret = new DeadlineScheduler(commandService, virtualThreadConcurrency);
+		} else if (async || keyedSerial) {
+			commandService = Executors.newWorkStealingPool();
+			ret = new DeadlineScheduler(commandService, Runtime.getRuntime().availableProcessors());
+		} else {
+			commandService = Executors.newSingleThreadExecutor();
+			ret = new DeadlineScheduler(commandService, 1);
 		}
+		commandServices.add(commandService);
+		return ret;
+	}
 
-		return new CommandReporting(author, authorIconURL, command, Instant.now());
+	private CommandReporting createReporting(CommandInteractionPayload event, Instant commandStart) {
+		return new CommandReporting(() -> {
+			if (event.getChannelType() == ChannelType.PRIVATE) {
+				return event.getUser().getName();
+			}
+			return event.getGuild().getName() + " / #" + event.getMessageChannel().getName() + " / "
+					+ event.getUser().getName();
+		}, event.getUser()::getEffectiveAvatarUrl, () -> {
+			StringBuilder command = new StringBuilder(event.getCommandString());
+			for (OptionMapping optionMapping : event.getOptions()) {
+				if (optionMapping.getType() == OptionType.ATTACHMENT) {
+					command.append(' ').append(optionMapping.getAsAttachment().getUrl());
+				}
+			}
+			return command.toString();
+		}, commandStart);
 	}
 
 	private CommandReporting createReporting(MessageReceivedEvent event) {
-		String author;
-		if (event.getChannelType() == ChannelType.PRIVATE) {
-			author = event.getAuthor().getName();
-		} else {
-			author = event.getGuild().getName() + " / #" + event.getChannel().getName() + " / "
+		return new CommandReporting(() -> {
+			if (event.getChannelType() == ChannelType.PRIVATE) {
+				return event.getAuthor().getName();
+			}
+			return event.getGuild().getName() + " / #" + event.getChannel().getName() + " / "
 					+ event.getAuthor().getName();
-		}
-
-		String authorIconURL = event.getAuthor().getEffectiveAvatarUrl();
-		Message message = event.getMessage();
-		String command = message.getContentStripped();
-		for (Attachment attachment : message.getAttachments()) {
-			command += " " + attachment.getUrl();
-		}
-
-		return new CommandReporting(author, authorIconURL, command, Instant.now());
+		}, event.getAuthor()::getEffectiveAvatarUrl, () -> {
+			Message message = event.getMessage();
+			StringBuilder command = new StringBuilder(message.getContentStripped());
+			for (Attachment attachment : message.getAttachments()) {
+				command.append(' ').append(attachment.getUrl());
+			}
+			return command.toString();
+		}, Instant.now());
 	}
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private CommandReporting createReporting(GenericComponentInteractionCreateEvent event) {
-		String author;
-		if (event.getChannelType() == ChannelType.PRIVATE) {
-			author = event.getUser().getName();
-		} else {
-			author = event.getGuild().getName() + " / #" + event.getMessageChannel().getName() + " / "
+		return new CommandReporting(() -> {
+			if (event.getChannelType() == ChannelType.PRIVATE) {
+				return event.getUser().getName();
+			}
+			return event.getGuild().getName() + " / #" + event.getMessageChannel().getName() + " / "
 					+ event.getUser().getName();
-		}
+		}, event.getUser()::getEffectiveAvatarUrl, () -> {
+			String command = event.getComponentId();
+			if (event instanceof GenericSelectMenuInteractionEvent) {
+				List values = ((GenericSelectMenuInteractionEvent) event).getValues();
+				command += "[" + values.stream().map(Object::toString).collect(Collectors.joining(",")) + "]";
+			}
+			return command;
+		}, Instant.now());
+	}
 
-		String authorIconURL = event.getUser().getEffectiveAvatarUrl();
+	private CompletableFuture<?> finishCommand(SlashCommandDefinition commandDefinition,
+			SlashCommandEvent commandEvent) {
+		// A handler that timed out may still be running, it must not reply after this
+		commandEvent.finish();
+		CommandReporting reporting = commandEvent.getReporting();
+		if (!commandDefinition.hasRestriction(CommandRestriction.NO_REPORTING)) {
+			submitReport(reporting);
+		}
 
-		String command = event.getComponentId();
+		InteractionHook hook = commandEvent.getHook();
+		if (!reporting.getExceptionsWithBlame().isEmpty()) {
+			return hook.sendMessageEmbeds(new EmbedBuilder().setColor(Color.red)
+					.appendDescription("Sorry, there was a problem completing your request.\n"
+							+ reporting.getExceptionsWithBlame().stream()
+									.map(e -> "`" + e.getException().getMessage() + "`").distinct()
+									.collect(Collectors.joining("\n")))
+					.build()).setEphemeral(commandEvent.isEphemeral()).submit();
+		}
 
-		if (event instanceof GenericSelectMenuInteractionEvent) {
-			List values = ((GenericSelectMenuInteractionEvent) event).getValues();
-			command += "[" + values.stream().map(Object::toString).collect(Collectors.joining(",")) + "]";
+		if (!commandEvent.hasReplied()) {
+			return hook.deleteOriginal().submit();
 		}
 
-		return new CommandReporting(author, authorIconURL, command, Instant.now());
+		return CompletableFuture.completedFuture(null);
 	}
 
 	private String getDurationFormatted(LocalDateTime then, LocalDateTime now) {
@@ -318,20 +499,184 @@ public class DiscordBot extends AbstractIdleService {
 		return result.stream().collect(Collectors.joining(", "));
 	}
 
+	public AdmissionControl getAdmissionControl() {
+		return admissionControl;
+	}
+
+	public AutoCompleteTracker getAutoCompleteTracker() {
+		return autoCompleteTracker;
+	}
+
+	public Collection<Bulkhead> getBulkheads() {
+		synchronized (commandLock) {
+			return ImmutableList.copyOf(bulkheads.values());
+		}
+	}
+
+	public ReportPipeline getReportPipeline() {
+		return reportPipeline;
+	}
+
+	private Map<Destination, MessageChannel> getReportingChannels() {
+		if (reportDestinations == null) {
+			return ImmutableMap.of();
+		}
+		return reportDestinations.get();
+	}
+
+	public ReportingPolicy getReportingPolicy() {
+		return reportingPolicy;
+	}
+
+	public RateLimiter getUserRateLimiter() {
+		return userRateLimiter;
+	}
+
+	public CommandRouter getRouter() {
+		return router.get();
+	}
+
+	public DeadlineScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * The scheduler running the interactions of the given shard, which is the
+	 * shared {@link #getScheduler()} unless each shard has its own executor.
+	 */
+	public DeadlineScheduler getScheduler(JDA shard) {
+		if (!executorPerShard || shardManager.isEmpty()) {
+			return scheduler;
+		}
+		int shardId = shard.getShardInfo().getShardId();
+		return shardSchedulers.computeIfAbsent(shardId, id -> createScheduler("dcba-shard-" + id + "-command-"));
+	}
+
+	public Optional<ShardManager> getShardManager() {
+		return shardManager;
+	}
+
+	public List<JDA> getShards() {
+		return shardManager.map(ShardManager::getShards).orElseGet(() -> ImmutableList.of(jda));
+	}
+
+	public DeadlineScheduler getSubtaskScheduler() {
+		return subtaskScheduler;
+	}
+
+	public KeyedSerialExecutor getKeyedExecutor() {
+		return keyedExecutor;
+	}
+
 	public InfoDefinition getInfo() {
 		return info;
 	}
 
+	/**
+	 * In sharded mode this is any shard run by this process, which is fine for
+	 * REST calls that are not tied to a guild. Use {@link #getJDA(long)} to
+	 * reach a guild's cache.
+	 *
+	 * @return empty if this process runs no shards right now, for example while
+	 *         it is standing by for the shard coordinator
+	 */
+	public Optional<JDA> findJDA() {
+		if (shardManager.isEmpty()) {
+			return Optional.ofNullable(jda);
+		}
+		return shardManager.get().getShardCache().stream().findFirst();
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if this process runs no shards right now
+	 * @see #findJDA()
+	 */
 	public JDA getJDA() {
-		return jda;
+		return findJDA().orElseThrow(() -> new IllegalStateException("No shards are running in this process!"));
 	}
 
-	void initialize() {
-		if (async) {
-			commandService = Executors.newWorkStealingPool();
-		} else {
-			commandService = Executors.newSingleThreadExecutor();
+	/**
+	 * The guild commands are registered in, if it is on a shard run by this
+	 * process. Other processes leave it to the one running that shard.
+	 */
+	private Optional<Guild> getDebugGuild() {
+		if (!configJson.has("debug_guild_commands")) {
+			return Optional.empty();
+		}
+		String guildId = configJson.getString("debug_guild_commands");
+		JDA shard = getJDA(Long.parseLong(guildId));
+		if (shard == null) {
+			LOGGER.info("Guild " + guildId + " is on a shard run by another process, not registering its commands");
+			return Optional.empty();
 		}
+		Guild guild = shard.getGuildById(guildId);
+		if (guild == null) {
+			LOGGER.warn("Guild " + guildId + " for debug commands was not found!");
+		}
+		return Optional.ofNullable(guild);
+	}
+
+	/**
+	 * @return the shard the guild is on, or null if that shard is not run by
+	 *         this process
+	 */
+	public JDA getJDA(long guildId) {
+		if (shardManager.isEmpty()) {
+			return jda;
+		}
+		ShardManager manager = shardManager.get();
+		return manager.getShardById((int) ((guildId >>> 22) % manager.getShardsTotal()));
+	}
+
+	private void heartbeat() {
+		ShardManager manager = shardManager.get();
+		try {
+			// Queued shards are not in the cache yet, they count as running so no
+			// other process is handed them
+			List<Integer> running = startedShards.stream().sorted().collect(Collectors.toList());
+			List<JDA> shards = manager.getShards();
+			long guildCount = shards.stream().mapToLong(s -> s.getGuildCache().size()).sum();
+			long ping = shards.isEmpty() ? 0 : Math.round(manager.getAverageGatewayPing());
+			ShardAssignment assignment = coordinator.get()
+					.heartbeat(new ShardStats(memberId, running, guildCount, ping));
+			if (manager.getShardsQueued() > 0) {
+				// Shutting down a shard that is still queued would not keep it from
+				// starting, rebalance once the queue is done
+				return;
+			}
+
+			for (int shardId : running) {
+				if (!assignment.getShardIds().contains(shardId)) {
+					LOGGER.info("Coordinator moved shard " + shardId + " away, shutting it down");
+					manager.shutdown(shardId);
+					startedShards.remove(shardId);
+				}
+			}
+			for (int shardId : assignment.getShardIds()) {
+				if (!running.contains(shardId)) {
+					LOGGER.info("Coordinator assigned shard " + shardId + ", starting it");
+					manager.start(shardId);
+					startedShards.add(shardId);
+				}
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Shard coordinator heartbeat failed", e);
+		}
+	}
+
+	void initialize() {
+		scheduler = createScheduler("dcba-command-");
+		// Subtasks get their own virtual threads so a handler joining them never
+		// waits on a slot of the pool it is itself occupying
+		subtaskScheduler = new DeadlineScheduler(new VirtualThreadExecutor("dcba-subtask-", SUBTASK_CONCURRENCY),
+				SUBTASK_CONCURRENCY);
+		admissionControl = new AdmissionControl(admissionLimit);
+		reportPipeline = new ReportPipeline(reportQueueCapacity, reportSenders, this::getReportingChannels,
+				errorAggregationWindow.isZero() ? Optional.empty()
+						: Optional.of(new ExceptionAggregator(errorAggregationWindow)),
+				reportingPolicy);
+		reportPipeline.start();
 
 		if (!commandSlash.containsKey(COMMAND_INFO)) {
 			addCommand(createCommandInfo());
@@ -339,6 +684,32 @@ public class DiscordBot extends AbstractIdleService {
 		if (!commandSlash.containsKey(COMMAND_FEEDBACK)) {
 			addCommand(createCommandFeedback());
 		}
+
+		Map<String, Bulkhead> prepared = prepareCommands(commandSlash.values());
+		router.set(new CommandRouter(commandSlash.values()));
+		setBulkheads(commandSlash.values(), prepared);
+
+		gatewayProfile = GatewayProfile.create(cacheProfile, reactionWatcher.isPresent(),
+				privateMessageHandler.isPresent(), gatewayIntents);
+		if (cacheProfile != CacheProfile.DEFAULT && (customSetup != null || customShardSetup != null)) {
+			LOGGER.warn("Using the " + cacheProfile + " cache profile with a custom setup, listeners added there "
+					+ "only get the intents given to withGatewayIntents and no member caches");
+		}
+		int defaultBytes = GatewayProfile.create(CacheProfile.DEFAULT, false, false, gatewayIntents)
+				.estimateBytesPerGuild();
+		LOGGER.info("Gateway profile " + gatewayProfile + ", saving an estimated "
+				+ (defaultBytes - gatewayProfile.estimateBytesPerGuild()) / 1024 + " KiB per guild");
+	}
+
+	private ShardAssignment joinCluster() throws IOException, InterruptedException {
+		ShardAssignment assignment = coordinator.get().join(memberId);
+		while (assignment.getShardIds().isEmpty()) {
+			LOGGER.info("No shards available for " + memberId + " yet, standing by");
+			Thread.sleep(HEARTBEAT_INTERVAL.toMillis());
+			assignment = coordinator.get().heartbeat(new ShardStats(memberId, ImmutableList.of(), 0, 0));
+		}
+		LOGGER.info("Joined shard cluster as " + memberId + " with shards " + assignment);
+		return assignment;
 	}
 
 	private JSONObject loadConfig() {
@@ -355,18 +726,214 @@ public class DiscordBot extends AbstractIdleService {
 		}
 	}
 
+	/**
+	 * Works out the bulkheads of the commands and checks their parameter types
+	 * without changing anything yet. Bulkheads whose limits did not change are
+	 * kept, so the interactions waiting in them stay in line.
+	 *
+	 * @return the bulkheads of the commands by name
+	 */
+	private Map<String, Bulkhead> prepareCommands(Collection<SlashCommandDefinition> commands) {
+		Map<String, Bulkhead> ret = new LinkedHashMap<>();
+		for (SlashCommandDefinition command : commands) {
+			String name = command.getBulkheadName();
+			if (command.getConcurrency() > 0 && !ret.containsKey(name)) {
+				Bulkhead current = bulkheads.get(name);
+				if (current != null && current.getConcurrency() == command.getConcurrency()
+						&& current.getQueueLimit() == command.getQueueLimit()) {
+					ret.put(name, current);
+				} else {
+					ret.put(name, new Bulkhead(name, command.getConcurrency(), command.getQueueLimit()));
+				}
+			}
+		}
+		for (SlashCommandDefinition command : commands) {
+			if (command.getBulkheadGroup().isPresent() && !ret.containsKey(command.getBulkheadName())) {
+				throw new IllegalStateException(
+						"Bulkhead " + command.getBulkheadName() + " does not have a concurrency limit!");
+			}
+			for (Class<? extends Record> paramType : command.getParamTypes()) {
+				command.getParamBinder(paramType);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Adds the command, or replaces the command with the same path, while the
+	 * bot is running.
+	 *
+	 * @see #reloadCommands(Collection, Collection)
+	 */
+	public CompletableFuture<Void> putCommand(SlashCommandDefinition command) {
+		return reloadCommands(ImmutableList.of(command), ImmutableList.of());
+	}
+
+	private CompletableFuture<Void> registerChangedCommands() {
+		List<CommandData> commandData = buildCommandData();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		Optional<Guild> debugGuild = getDebugGuild();
+		if (debugGuild.isPresent()) {
+			Guild guild = debugGuild.get();
+			futures.add(commandRegistrar.registerChanged("guild " + guild.getId(), commandData, guild::upsertCommand,
+					guild::deleteCommandById, guild::retrieveCommands, this::bindCommands));
+		}
+		Optional<JDA> anyShard = findJDA();
+		if (anyShard.isPresent()) {
+			JDA jda = anyShard.get();
+			futures.add(commandRegistrar.registerChanged("global", commandData, jda::upsertCommand,
+					jda::deleteCommandById, jda::retrieveCommands, this::bindCommands));
+		} else {
+			LOGGER.warn("No shards are running in this process, global commands were not updated");
+		}
+		return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+	}
+
+	/**
+	 * Adds, replaces and removes slash commands without reconnecting the
+	 * gateway. The routing table is swapped in one step, interactions that were
+	 * already routed finish with the definitions they were routed to, and only
+	 * the commands that changed are sent to Discord.
+	 *
+	 * @param put
+	 *            commands to add, replacing any command with the same path
+	 * @param removePaths
+	 *            paths of the commands to remove
+	 * @return completes once Discord has the changed commands
+	 */
+	public CompletableFuture<Void> reloadCommands(Collection<SlashCommandDefinition> put,
+			Collection<String> removePaths) {
+		synchronized (commandLock) {
+			Map<String, SlashCommandDefinition> commands = new LinkedHashMap<>(commandSlash);
+			for (String path : removePaths) {
+				if (commands.remove(path) == null) {
+					throw new IllegalArgumentException("Command /" + path + " does not exist!");
+				}
+			}
+			for (SlashCommandDefinition command : put) {
+				commands.put(command.getPath(), command);
+			}
+			// Everything that can fail happens before anything is changed
+			Map<String, Bulkhead> prepared = prepareCommands(commands.values());
+			CommandRouter reloaded = new CommandRouter(commands.values());
+
+			setBulkheads(commands.values(), prepared);
+			commandSlash.clear();
+			commandSlash.putAll(commands);
+			router.updateAndGet(reloaded::withBindings);
+			LOGGER.info("Reloaded commands, put " + put.stream().map(c -> "/" + c.getPath()).toList()
+					+ ", removed " + removePaths);
+			return registerChangedCommands();
+		}
+	}
+
+	/**
+	 * Removes the command while the bot is running.
+	 *
+	 * @see #reloadCommands(Collection, Collection)
+	 */
+	public CompletableFuture<Void> removeCommand(String path) {
+		return reloadCommands(ImmutableList.of(), ImmutableList.of(path));
+	}
+
+	private SlashCommandEvent runCommand(SlashCommandDefinition commandDefinition, SlashCommandEvent commandEvent,
+			Instant deadline) {
+		try {
+			callInContext(InteractionType.SLASH_COMMAND, deadline, commandEvent.getReporting(), () -> {
+				commandDefinition.getHandler().handleCommand(commandEvent);
+				return null;
+			});
+		} catch (Exception e) {
+			if (commandEvent.isFinished()) {
+				// Timed out, the report has already been sent
+				LOGGER.debug("Exception after /" + commandDefinition.getPath() + " finished", e);
+				return commandEvent;
+			}
+			LOGGER.error("Uncaught Exception!");
+			e.printStackTrace();
+			commandEvent.getReporting().addException(e);
+		}
+		return commandEvent;
+	}
+
+	/**
+	 * Gives the user back the rate limit tokens of an interaction that was
+	 * turned away after passing the rate limiters.
+	 */
+	private void refund(long userId, Optional<RateLimiter> commandRateLimiter) {
+		userRateLimiter.refund(userId);
+		commandRateLimiter.ifPresent(r -> r.refund(userId));
+	}
+
+	private void release(IReplyCallback event, Throwable t) {
+		admissionControl.release();
+		if (t != null && Throwables.getRootCause(t) instanceof RejectedExecutionException) {
+			event.reply(MESSAGE_RESTARTING).setEphemeral(true).queue();
+		}
+	}
+
+	private static Duration remaining(long deadline) {
+		// At least a millisecond, JDA waits forever on a timeout of zero
+		return Duration.ofMillis(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+	}
+
+	public void setAdmissionLimit(int highWaterMark) {
+		this.admissionLimit = highWaterMark;
+	}
+
 	public void setAsync(boolean async) {
 		this.async = async;
 	}
 
+	private void setBulkheads(Collection<SlashCommandDefinition> commands, Map<String, Bulkhead> prepared) {
+		for (SlashCommandDefinition command : commands) {
+			if (command.getConcurrency() > 0 || command.getBulkheadGroup().isPresent()) {
+				command.setBulkhead(Optional.of(prepared.get(command.getBulkheadName())));
+			} else {
+				command.setBulkhead(Optional.empty());
+			}
+		}
+		bulkheads.clear();
+		bulkheads.putAll(prepared);
+	}
+
 	public void setButtonHandler(Optional<ButtonHandler> buttonHandler) {
 		this.buttonHandler = buttonHandler;
 	}
 
+	public void setCacheProfile(CacheProfile cacheProfile) {
+		this.cacheProfile = cacheProfile;
+	}
+
+	public void setCommandTimeout(Optional<Duration> commandTimeout) {
+		this.commandTimeout = commandTimeout;
+	}
+
+	public void setCoordinator(Optional<ShardCoordinator> coordinator) {
+		this.coordinator = coordinator;
+	}
+
 	public void setCustomSetup(Function<JDABuilder, JDABuilder> customSetup) {
 		this.customSetup = customSetup;
 	}
 
+	public void setCustomShardSetup(
+			Function<DefaultShardManagerBuilder, DefaultShardManagerBuilder> customShardSetup) {
+		this.customShardSetup = customShardSetup;
+	}
+
+	public void setErrorAggregationWindow(Duration errorAggregationWindow) {
+		this.errorAggregationWindow = errorAggregationWindow;
+	}
+
+	public void setExecutorPerShard(boolean executorPerShard) {
+		this.executorPerShard = executorPerShard;
+	}
+
+	public void setKeyedSerial(boolean keyedSerial) {
+		this.keyedSerial = keyedSerial;
+	}
+
 	public void setMessageContextHandler(Optional<MessageContextHandler> messageContextHandler) {
 		this.messageContextHandler = messageContextHandler;
 	}
@@ -379,6 +946,31 @@ public class DiscordBot extends AbstractIdleService {
 		this.reactionWatcher = reactionWatcher;
 	}
 
+	public void setReportQueue(int capacity, int senders) {
+		this.reportQueueCapacity = capacity;
+		this.reportSenders = senders;
+	}
+
+	public void setReportingPolicy(ReportingPolicy reportingPolicy) {
+		this.reportingPolicy = reportingPolicy;
+	}
+
+	public void setSerialKey(InteractionType type, SerialKey serialKey) {
+		serialKeys.put(type, serialKey);
+	}
+
+	public void setShardRange(int minShardId, int maxShardId) {
+		this.shardRange = Optional.of(new int[] { minShardId, maxShardId });
+	}
+
+	public void setShardsTotal(int shardsTotal) {
+		this.shardsTotal = shardsTotal;
+	}
+
+	public void setShutdownTimeout(Duration shutdownTimeout) {
+		this.shutdownTimeout = shutdownTimeout;
+	}
+
 	public void setStringSelectHandler(Optional<StringSelectHandler> stringSelectHandler) {
 		this.stringSelectHandler = stringSelectHandler;
 	}
@@ -387,9 +979,68 @@ public class DiscordBot extends AbstractIdleService {
 		this.privateMessageHandler = privateMessageHandler;
 	}
 
+	public void setUserRateLimiter(RateLimiter userRateLimiter) {
+		this.userRateLimiter = userRateLimiter;
+	}
+
+	public void setVirtualThreads(int maxConcurrency) {
+		this.virtualThreadConcurrency = maxConcurrency;
+	}
+
 	@Override
-	protected void shutDown() {
-		jda.shutdown();
+	protected void shutDown() throws Exception {
+		draining = true;
+		// The subtask scheduler stays open, handlers still finishing may fork
+		int rejected = scheduler.shutdown().size();
+		for (DeadlineScheduler shardScheduler : shardSchedulers.values()) {
+			rejected += shardScheduler.shutdown().size();
+		}
+		LOGGER.info("Draining, rejected " + rejected + " queued tasks, waiting for " + admissionControl.getInFlight()
+				+ " in flight...");
+
+		// One deadline for the whole drain, so the timeout is not paid once per step
+		long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+		while (admissionControl.getInFlight() > 0 && System.nanoTime() - deadline < 0) {
+			Thread.sleep(50);
+		}
+		subtaskScheduler.shutdown();
+		if (admissionControl.getInFlight() > 0) {
+			LOGGER.warn("Gave up waiting for " + admissionControl.getInFlight() + " interactions after "
+					+ shutdownTimeout.toMillis() + " ms, interrupting them");
+			commandServices.forEach(ExecutorService::shutdownNow);
+		} else {
+			commandServices.forEach(ExecutorService::shutdown);
+		}
+
+		if (heartbeatService != null) {
+			heartbeatService.shutdownNow();
+		}
+
+		if (!reportPipeline.shutdown(remaining(deadline))) {
+			LOGGER.warn("Gave up on " + reportPipeline.getQueued() + " queued reports");
+		}
+
+		// Replies and reports already queued in JDA are still sent before it closes
+		List<JDA> shards = getShards();
+		if (shardManager.isPresent()) {
+			shardManager.get().shutdown();
+		} else {
+			jda.shutdown();
+		}
+		for (JDA shard : shards) {
+			if (!shard.awaitShutdown(remaining(deadline))) {
+				shard.shutdownNow();
+			}
+		}
+
+		// Only leave once the shards are closed, so nobody else starts them early
+		if (coordinator.isPresent()) {
+			try {
+				coordinator.get().leave(memberId);
+			} catch (IOException e) {
+				LOGGER.warn("Failed to leave shard cluster", e);
+			}
+		}
 	}
 
 	@Override
@@ -398,264 +1049,407 @@ public class DiscordBot extends AbstractIdleService {
 				"Discord Core Bot Apple");
 		info.addTechnology("[JDA](https://github.com/discord-jda/JDA)", Optional.of("5.2.1"), "Java Discord API");
 
-		JDABuilder builder = JDABuilder.createDefault(configJson.getString("bot_token"))//
-				.setEnableShutdownHook(false)//
-				.addEventListeners(new ListenerAdapter() {
-					@Override
-					public void onButtonInteraction(ButtonInteractionEvent event) {
-						if (buttonHandler.isPresent()) {
-							Future<?> future = activeUsers.get(event.getUser().getId());
-							if (future != null && !future.isDone()) {
-								event.reply("I am already processing your selection, please wait...").setEphemeral(true)
-										.complete();
-								return;
-							}
-							future = commandService.submit(() -> {
+		ListenerAdapter listener = new ListenerAdapter() {
+			@Override
+			public void onButtonInteraction(ButtonInteractionEvent event) {
+				if (buttonHandler.isPresent()) {
+					if (!allow(userRateLimiter, event)) {
+						return;
+					}
+					if (!admit(InteractionType.BUTTON, event)) {
+						userRateLimiter.refund(event.getUser().getIdLong());
+						return;
+					}
+					Instant deadline = InteractionType.BUTTON.getDeadline(event.getTimeCreated().toInstant());
+					submit(event.getJDA(), InteractionType.BUTTON, deadline, event.getChannelIdLong(),
+							event.getGuild(), event.getUser().getIdLong(), () -> {
 								CommandReporting reporting = createReporting(event);
 								reporting.addField(new Field("Context",
 										"[Message](" + event.getMessage().getJumpUrl() + ")", true));
 								try {
-									buttonHandler.get().onButtonInteraction(event, reporting);
+									callInContext(InteractionType.BUTTON, deadline, reporting, () -> {
+										buttonHandler.get().onButtonInteraction(event, reporting);
+										return null;
+									});
 								} catch (Exception e) {
 									e.printStackTrace();
 									reporting.addException(e);
 								} finally {
 									submitReport(reporting);
-									activeUsers.remove(event.getUser().getId());
 								}
-							});
-							activeUsers.put(event.getUser().getId(), future);
+							}).whenComplete((r, t) -> release(event, t));
+				}
+			}
+
+			@Override
+			public void onChannelDelete(ChannelDeleteEvent event) {
+				if (reportDestinations != null) {
+					reportDestinations.onChannelDeleted(event.getChannel().getIdLong());
+				}
+			}
+
+			@Override
+			public void onCommandAutoCompleteInteraction(CommandAutoCompleteInteractionEvent event) {
+				SlashCommandDefinition commandDefinition = router.get().route(event);
+				if (commandDefinition == null) {
+					event.replyChoices(Collections.emptyList()).queue();
+					return;
+				}
+				Optional<AutoCompleteHandler> autoCompleteHandler = commandDefinition.getAutoCompleteHandler();
+				if (autoCompleteHandler.isPresent()) {
+					Optional<AutoCompleteCache> cache = commandDefinition.getAutoCompleteCache();
+					if (cache.isPresent()) {
+						Optional<List<Choice>> cached = cache.get().get(commandDefinition.getPath(), event);
+						if (cached.isPresent()) {
+							event.replyChoices(cached.get()).queue();
+							return;
 						}
 					}
-
-					@Override
-					public void onCommandAutoCompleteInteraction(CommandAutoCompleteInteractionEvent event) {
-						SlashCommandDefinition commandDefinition = commandSlash
-								.get(event.getFullCommandName().replace(' ', '/'));
-						Optional<AutoCompleteHandler> autoCompleteHandler = commandDefinition.getAutoCompleteHandler();
-						if (autoCompleteHandler.isPresent()) {
-							commandService.submit(() -> {
+					if (draining || !admissionControl.tryAdmit(InteractionType.AUTO_COMPLETE)) {
+						event.replyChoices(Collections.emptyList()).queue();
+						return;
+					}
+					Instant deadline = InteractionType.AUTO_COMPLETE
+							.getDeadline(event.getTimeCreated().toInstant());
+					DeadlineScheduler.Task<Void> task = getScheduler(event.getJDA()).submit(
+							InteractionType.AUTO_COMPLETE,
+							deadline, () -> {
 								AutoCompleteEvent autoCompleteEvent = new AutoCompleteEvent(event);
 								autoCompleteHandler.get().handleAutoComplete(autoCompleteEvent);
+								if (cache.isPresent() && autoCompleteEvent.getChoices().isPresent()) {
+									cache.get().put(commandDefinition.getPath(), event,
+											autoCompleteEvent.getChoices().get());
+								}
 							});
-						}
-					}
+					autoCompleteTracker.track(event.getUser().getIdLong(), commandDefinition.getPath(),
+							event.getFocusedOption().getName(), task);
+					task.whenComplete((r, t) -> admissionControl.release());
+				}
+			}
 
-					@Override
-					public void onMessageContextInteraction(MessageContextInteractionEvent event) {
-						if (messageContextHandler.isPresent()) {
-							commandService.submit(() -> {
-								CommandReporting reporting = createReporting(event);
+			@Override
+			public void onMessageContextInteraction(MessageContextInteractionEvent event) {
+				if (messageContextHandler.isPresent()) {
+					if (!allow(userRateLimiter, event)) {
+						return;
+					}
+					if (!admit(InteractionType.MESSAGE_CONTEXT, event)) {
+						userRateLimiter.refund(event.getUser().getIdLong());
+						return;
+					}
+					Instant commandStart = Instant.now();
+					Instant deadline = InteractionType.MESSAGE_CONTEXT
+							.getDeadline(event.getTimeCreated().toInstant());
+					submit(event.getJDA(), InteractionType.MESSAGE_CONTEXT, deadline, event.getChannelIdLong(),
+							event.getGuild(), event.getUser().getIdLong(), () -> {
+								CommandReporting reporting = createReporting(event, commandStart);
 								reporting.addField(new Field("Context",
 										"[Message](" + event.getTarget().getJumpUrl() + ")", true));
 								try {
-									messageContextHandler.get().onMessageContextInteraction(event, reporting);
+									callInContext(InteractionType.MESSAGE_CONTEXT, deadline, reporting, () -> {
+										messageContextHandler.get().onMessageContextInteraction(event, reporting);
+										return null;
+									});
 								} catch (Exception e) {
 									e.printStackTrace();
 									reporting.addException(e);
 								} finally {
 									submitReport(reporting);
 								}
-							});
-						}
-					}
+							}).whenComplete((r, t) -> release(event, t));
+				}
+			}
 
-					@Override
-					public void onMessageReactionAdd(MessageReactionAddEvent event) {
-						if (reactionWatcher.isPresent()) {
-							reactionWatcher.get().seenReaction(event);
-						}
-					}
+			@Override
+			public void onMessageReactionAdd(MessageReactionAddEvent event) {
+				if (reactionWatcher.isPresent()) {
+					reactionWatcher.get().seenReaction(event);
+				}
+			}
 
-					@Override
-					public void onMessageReactionRemove(MessageReactionRemoveEvent event) {
-						if (reactionWatcher.isPresent()) {
-							reactionWatcher.get().seenReactionRemoved(event);
-						}
-					}
+			@Override
+			public void onMessageReactionRemove(MessageReactionRemoveEvent event) {
+				if (reactionWatcher.isPresent()) {
+					reactionWatcher.get().seenReactionRemoved(event);
+				}
+			}
 
-					@Override
-					public void onMessageReactionRemoveAll(MessageReactionRemoveAllEvent event) {
-						if (reactionWatcher.isPresent()) {
-							reactionWatcher.get().seenAllReactionRemoved(event);
-						}
-					}
+			@Override
+			public void onMessageReactionRemoveAll(MessageReactionRemoveAllEvent event) {
+				if (reactionWatcher.isPresent()) {
+					reactionWatcher.get().seenAllReactionRemoved(event);
+				}
+			}
 
-					@Override
-					public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
-						SlashCommandDefinition commandDefinition = commandSlash
-								.get(event.getFullCommandName().replace(' ', '/'));
-						boolean ephemeral = commandDefinition.hasRestriction(CommandRestriction.EPHEMERAL);
-
-						CommandReporting reporting = createReporting(event);
-						InteractionHook hook = event.deferReply(ephemeral).complete();
-						SlashCommandEvent commandEvent = new SlashCommandEvent(event, reporting, hook, ephemeral);
-
-						commandService.submit(() -> {
-							try {
-								commandDefinition.getHandler().handleCommand(commandEvent);
-							} catch (Exception e) {
-								LOGGER.error("Uncaught Exception!");
-								e.printStackTrace();
-								reporting.addException(e);
-							} finally {
-								if (!commandDefinition.hasRestriction(CommandRestriction.NO_REPORTING)) {
-									submitReport(reporting);
-								}
+			@Override
+			public void onReady(ReadyEvent event) {
+				// Also reaches shards the manager or the coordinator start later
+				event.getJDA().setRequiredScopes("bot", "applications.commands");
+				// A shard that was restarted is a new JDA, entities of the old one are stale
+				if (reportDestinations != null) {
+					reportDestinations.invalidate();
+				}
+			}
 
-								if (!reporting.getExceptionsWithBlame().isEmpty()) {
-									commandEvent.replyEmbed(new EmbedBuilder().setColor(Color.red)
-											.appendDescription("Sorry, there was a problem completing your request.\n"
-													+ reporting.getExceptionsWithBlame().stream()
-															.map(e -> "`" + e.getException().getMessage() + "`")
-															.distinct().collect(Collectors.joining("\n")))
-											.build());
-								}
+			@Override
+			public void onSessionRecreate(SessionRecreateEvent event) {
+				if (reportDestinations != null) {
+					reportDestinations.invalidate();
+				}
+			}
 
-								if (!commandEvent.hasReplied()) {
-									hook.deleteOriginal().complete();
+			@Override
+			public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
+				SlashCommandDefinition commandDefinition = router.get().route(event);
+				if (commandDefinition == null) {
+					LOGGER.warn("Received unknown command /" + event.getFullCommandName());
+					event.reply(MESSAGE_UNKNOWN_COMMAND).setEphemeral(true).queue();
+					return;
+				}
+				long userId = event.getUser().getIdLong();
+				Optional<RateLimiter> commandRateLimiter = commandDefinition.getRateLimiter();
+				if (!allow(userRateLimiter, event)) {
+					return;
+				}
+				if (commandRateLimiter.isPresent() && !allow(commandRateLimiter.get(), event)) {
+					// Only the limiter that turned it away keeps its token
+					userRateLimiter.refund(userId);
+					return;
+				}
+				if (!admit(InteractionType.SLASH_COMMAND, event)) {
+					refund(userId, commandRateLimiter);
+					return;
+				}
+				boolean ephemeral = commandDefinition.hasRestriction(CommandRestriction.EPHEMERAL);
+				Instant commandStart = Instant.now();
+				Instant deadline = InteractionType.SLASH_COMMAND.getDeadline(event.getTimeCreated().toInstant());
+
+				Optional<Duration> timeout = commandDefinition.getTimeout().or(() -> commandTimeout);
+
+				CompletableFuture<InteractionHook> deferred = new CompletableFuture<>();
+				// Take the serial key's turn now, so commands run in the order they
+				// arrived rather than the order their defers complete
+				long key = serialKey(InteractionType.SLASH_COMMAND, event.getChannelIdLong(), event.getGuild(), userId);
+				CompletableFuture<Void> ran = new CompletableFuture<>();
+				CompletableFuture<Void> turn = key == -1 ? CompletableFuture.completedFuture(null)
+						: keyedExecutor.reserve(key, ran);
+				Supplier<CompletableFuture<?>> task = () -> {
+					// A handler that timed out may still be running, so its slots are
+					// only given back once its thread is done
+					AtomicReference<CompletableFuture<Void>> handlerExited = new AtomicReference<>(
+							CompletableFuture.completedFuture(null));
+					return deferred//
+							.thenCombine(turn, (hook, v) -> hook)//
+							.thenCompose(hook -> {
+								SlashCommandEvent commandEvent = createCommandEvent(event, commandDefinition, hook,
+										ephemeral, commandStart);
+								DeadlineScheduler.Task<SlashCommandEvent> run = getScheduler(event.getJDA()).submit(
+										InteractionType.SLASH_COMMAND, deadline, timeout,
+										() -> runCommand(commandDefinition, commandEvent, deadline));
+								handlerExited.set(run.whenExited());
+								return run.handle((r, t) -> checkTimeout(commandEvent, t));
+							})//
+							.thenCompose(commandEvent -> finishCommand(commandDefinition, commandEvent))//
+							.whenComplete((r, t) -> {
+								Throwable cause = t == null ? null : Throwables.getRootCause(t);
+								if (t != null && !(cause instanceof CancellationException)
+										&& !(cause instanceof RejectedExecutionException)) {
+									LOGGER.error("Failed to process command /" + commandDefinition.getPath(), t);
 								}
-							}
-						});
+							})//
+							.handle((r, t) -> handlerExited.get())//
+							.thenCompose(exited -> exited)//
+							.whenComplete((r, t) -> {
+								ran.complete(null);
+								admissionControl.release();
+							});
+				};
+
+				Optional<Bulkhead> bulkhead = commandDefinition.getBulkhead();
+				if (bulkhead.isPresent()) {
+					if (!bulkhead.get().offer(task)) {
+						LOGGER.warn("Rejected /" + commandDefinition.getPath() + " (" + bulkhead.get() + ")");
+						ran.complete(null);
+						admissionControl.release();
+						refund(userId, commandRateLimiter);
+						event.reply("This command is very busy right now, please try again later.")
+								.setEphemeral(true).queue();
+						return;
 					}
+				} else {
+					task.get();
+				}
 
-					@Override
-					public void onStringSelectInteraction(StringSelectInteractionEvent event) {
-						if (stringSelectHandler.isPresent()) {
-							Future<?> future = activeUsers.get(event.getUser().getId());
-							if (future != null && !future.isDone()) {
-								event.reply("I am already processing your selection, please wait...").setEphemeral(true)
-										.complete();
-								return;
-							}
-							future = commandService.submit(() -> {
+				event.deferReply(ephemeral).submit().whenComplete((hook, t) -> {
+					if (t != null) {
+						deferred.completeExceptionally(t);
+					} else {
+						deferred.complete(hook);
+					}
+				});
+			}
+
+			@Override
+			public void onStringSelectInteraction(StringSelectInteractionEvent event) {
+				if (stringSelectHandler.isPresent()) {
+					if (!allow(userRateLimiter, event)) {
+						return;
+					}
+					if (!admit(InteractionType.STRING_SELECT, event)) {
+						userRateLimiter.refund(event.getUser().getIdLong());
+						return;
+					}
+					Instant deadline = InteractionType.STRING_SELECT.getDeadline(event.getTimeCreated().toInstant());
+					submit(event.getJDA(), InteractionType.STRING_SELECT, deadline, event.getChannelIdLong(),
+							event.getGuild(), event.getUser().getIdLong(), () -> {
 								CommandReporting reporting = createReporting(event);
 								reporting.addField(new Field("Context",
 										"[Message](" + event.getMessage().getJumpUrl() + ")", true));
 								try {
-									stringSelectHandler.get().onStringSelectInteraction(event, reporting);
+									callInContext(InteractionType.STRING_SELECT, deadline, reporting, () -> {
+										stringSelectHandler.get().onStringSelectInteraction(event, reporting);
+										return null;
+									});
 								} catch (Exception e) {
 									e.printStackTrace();
 									reporting.addException(e);
 								} finally {
 									submitReport(reporting);
-									activeUsers.remove(event.getUser().getId());
 								}
-							});
-							activeUsers.put(event.getUser().getId(), future);
-						}
-					}
+							}).whenComplete((r, t) -> release(event, t));
+				}
+			}
 
-					@Override
-					public void onMessageReceived(MessageReceivedEvent event) {
-						if (event.getChannelType() != ChannelType.PRIVATE) {
-							return;
-						}
-						if (event.getAuthor().isBot()) {
-							return;
-						}
-						if (privateMessageHandler.isPresent()) {
-							commandService.submit(() -> {
+			@Override
+			public void onMessageReceived(MessageReceivedEvent event) {
+				if (event.getChannelType() != ChannelType.PRIVATE) {
+					return;
+				}
+				if (event.getAuthor().isBot()) {
+					return;
+				}
+				if (privateMessageHandler.isPresent()) {
+					if (!userRateLimiter.tryAcquire(event.getAuthor().getIdLong())) {
+						LOGGER.debug("Rate limited private message from " + event.getAuthor().getId());
+						return;
+					}
+					if (draining || !admissionControl.tryAdmit(InteractionType.PRIVATE_MESSAGE)) {
+						LOGGER.debug("Shed private message (" + admissionControl + ")");
+						userRateLimiter.refund(event.getAuthor().getIdLong());
+						return;
+					}
+					Instant deadline = InteractionType.PRIVATE_MESSAGE
+							.getDeadline(event.getMessage().getTimeCreated().toInstant());
+					submit(event.getJDA(), InteractionType.PRIVATE_MESSAGE, deadline, event.getChannel().getIdLong(),
+							null, event.getAuthor().getIdLong(), () -> {
 								CommandReporting reporting = createReporting(event);
 								try {
-									privateMessageHandler.get().onPrivateMessageReceived(event, reporting);
+									callInContext(InteractionType.PRIVATE_MESSAGE, deadline, reporting, () -> {
+										privateMessageHandler.get().onPrivateMessageReceived(event, reporting);
+										return null;
+									});
 								} catch (Exception e) {
 									e.printStackTrace();
 									reporting.addException(e);
 								} finally {
 									submitReport(reporting);
 								}
-							});
-						}
-					}
-				});
-		if (customSetup != null) {
-			builder = customSetup.apply(builder);
-		}
-		jda = builder.build().awaitReady();
-		jda.setRequiredScopes("bot", "applications.commands");
-
-		reportingUserID = Optional.ofNullable(configJson.optString("reporting_user_id", null));
-		reportingChannelID = Optional.ofNullable(configJson.optString("reporting_channel_id", null));
-
-		if (configJson.has("debug_guild_commands")) {
-			String guildId = configJson.getString("debug_guild_commands");
-			Guild guild = jda.getGuildById(guildId);
-			CommandListUpdateAction updateCommands = guild.updateCommands();
-			buildUpdateCommands(updateCommands);
-			updateCommands.queue();
-		}
-
-		CommandListUpdateAction updateCommands = jda.updateCommands();
-		buildUpdateCommands(updateCommands);
-		updateCommands.queue();
-	}
-
-	public synchronized void submitReport(CommandReporting reporting) {
-		reporting.getExceptionsWithBlame().stream().map(e -> {
-			try (StringWriter sw = new StringWriter(); PrintWriter pw = new PrintWriter(sw)) {
-				if (e.getBlame().isPresent()) {
-					pw.println("(" + e.getBlame().get() + ")");
+							}).whenComplete((r, t) -> admissionControl.release());
 				}
-				e.getException().printStackTrace(pw);
-				pw.flush();
-				return sw.toString();
-			} catch (IOException e1) {
-				e1.printStackTrace();
-				return null;
 			}
-		}).distinct().forEach(System.err::print);
+		};
 
-		try {
-			List<MessageEmbed> embeds = reporting.createEmbeds();
-			if (embeds.isEmpty()) {
-				return;
+		String token = configJson.getString("bot_token");
+		if (shardsTotal != 0 || coordinator.isPresent()) {
+			Optional<ShardAssignment> assignment = Optional.empty();
+			if (coordinator.isPresent()) {
+				assignment = Optional.of(joinCluster());
 			}
-			List<String> urls = reporting.createURLList();
-
-			List<String> urlReplies;
-			if (urls.isEmpty()) {
-				urlReplies = ImmutableList.of();
-			} else {
-				urlReplies = SplitUtil.split(urls.stream().collect(Collectors.joining("\n")),
-						Message.MAX_CONTENT_LENGTH, true, Strategy.NEWLINE, Strategy.ANYWHERE);
+			DefaultShardManagerBuilder builder = gatewayProfile
+					.apply(DefaultShardManagerBuilder.create(token, gatewayProfile.getIntents()))//
+					.setEnableShutdownHook(false)//
+					.setShardsTotal(assignment.map(ShardAssignment::getShardsTotal).orElse(shardsTotal))//
+					.addEventListeners(listener);
+			if (assignment.isPresent()) {
+				builder = builder.setShards(assignment.get().getShardIds());
+			} else if (shardRange.isPresent()) {
+				builder = builder.setShards(shardRange.get()[0], shardRange.get()[1]);
 			}
-
-			if (reportingUserID.isPresent()) {
-				PrivateChannel privateChannel = jda.openPrivateChannelById(reportingUserID.get()).complete();
-				for (MessageEmbed embed : embeds) {
-					privateChannel.sendMessageEmbeds(embed).queue();
-				}
-				for (String urlReply : urlReplies) {
-					privateChannel.sendMessage(urlReply).queue();
-				}
+			if (customShardSetup != null) {
+				builder = customShardSetup.apply(builder);
 			}
-
-			if (reportingChannelID.isPresent()) {
-				TextChannel textChannel = jda.getTextChannelById(reportingChannelID.get());
-				if (textChannel != null) {
-					for (MessageEmbed embed : embeds) {
-						textChannel.sendMessageEmbeds(embed).queue();
-					}
-					for (String urlReply : urlReplies) {
-						textChannel.sendMessage(urlReply).queue();
-					}
-				}
+			ShardManager manager = builder.build();
+			shardManager = Optional.of(manager);
+			assignment.ifPresent(a -> startedShards.addAll(a.getShardIds()));
+			// The manager builds the shards one at a time from a queue, the later
+			// ones are not in its cache until then
+			while (manager.getShardsQueued() > 0) {
+				Thread.sleep(SHARD_QUEUE_POLL.toMillis());
 			}
-
-		} catch (Exception e) {
-			if (reportingUserID.isPresent()) {
-				PrivateChannel privateChannel = jda.openPrivateChannelById(reportingUserID.get()).complete();
-				privateChannel.sendMessage("Failed to create report!").complete();
-				try (StringWriter sw = new StringWriter(); PrintWriter pw = new PrintWriter(sw)) {
-					e.printStackTrace();
-					e.printStackTrace(pw);
-					pw.flush();
-					privateChannel.sendFiles(FileUpload.fromData(sw.toString().getBytes(), "Exception.txt")).complete();
-				} catch (IOException e1) {
-					e1.printStackTrace();
-				}
+			for (JDA shard : manager.getShardCache()) {
+				shard.awaitReady();
 			}
+			LOGGER.info("Started shards " + manager.getShardCache().stream()
+					.map(s -> s.getShardInfo().getShardString()).collect(Collectors.joining(", ")));
+			if (coordinator.isPresent()) {
+				heartbeatService = Executors.newSingleThreadScheduledExecutor(
+						new ThreadFactoryBuilder().setNameFormat("dcba-heartbeat-%d").setDaemon(true).build());
+				heartbeatService.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_INTERVAL.toMillis(),
+						HEARTBEAT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+			}
+		} else {
+			JDABuilder builder = gatewayProfile.apply(JDABuilder.create(token, gatewayProfile.getIntents()))//
+					.setEnableShutdownHook(false)//
+					.addEventListeners(listener);
+			if (customSetup != null) {
+				builder = customSetup.apply(builder);
+			}
+			jda = builder.build().awaitReady();
 		}
+
+		reportingUserID = Optional.ofNullable(configJson.optString("reporting_user_id", null));
+		reportingChannelID = Optional.ofNullable(configJson.optString("reporting_channel_id", null));
+		reportDestinations = new ReportDestinations(this::getJDA,
+				id -> shardManager.map(m -> m.getTextChannelById(id)).orElseGet(() -> jda.getTextChannelById(id)),
+				reportingUserID, reportingChannelID);
+		reportDestinations.prefetch();
+
+		JDA jda = getJDA();
+		commandRegistrar = new CommandRegistrar(new File(COMMAND_STATE_FILE),
+				jda.getSelfUser().getApplicationIdLong());
+		List<CommandData> commandData = buildCommandData();
+		Optional<Guild> debugGuild = getDebugGuild();
+		if (debugGuild.isPresent()) {
+			Guild guild = debugGuild.get();
+			commandRegistrar.register("guild " + guild.getId(), commandData, guild::updateCommands,
+					guild::retrieveCommands, this::bindCommands);
+		}
+		commandRegistrar.register("global", commandData, jda::updateCommands, jda::retrieveCommands,
+				this::bindCommands);
+	}
+
+	/**
+	 * @return the key interactions of this type are serialized by, or -1 if
+	 *         they run in parallel
+	 */
+	private long serialKey(InteractionType type, long channelId, Guild guild, long userId) {
+		if (!keyedSerial) {
+			return -1;
+		}
+		return serialKeys.getOrDefault(type, SerialKey.CHANNEL).select(channelId, guild, userId);
+	}
+
+	private CompletableFuture<Void> submit(JDA shard, InteractionType type, Instant deadline, long channelId,
+			Guild guild, long userId, Runnable runnable) {
+		DeadlineScheduler scheduler = getScheduler(shard);
+		long key = serialKey(type, channelId, guild, userId);
+		if (key == -1) {
+			return scheduler.submit(type, deadline, runnable);
+		}
+		return keyedExecutor.submit(key, () -> scheduler.submit(type, deadline, runnable));
+	}
+
+	public void submitReport(CommandReporting reporting) {
+		reportPipeline.submit(reporting);
 	}
 }
@@ -0,0 +1,152 @@
+package com.demod.dcba;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.demod.dcba.CommandReporting.ExceptionWithBlame;
+import com.demod.dcba.CommandReporting.Level;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+/**
+ * Collapses reports of the same exception. The first report with an exception
+ * fingerprint is sent as is, later reports with only known fingerprints are
+ * held back and counted, and once per window a summary of the repeats is sent
+ * instead. A fingerprint that has not repeated for a whole window is forgotten.
+ */
+public class ExceptionAggregator {
+	private static class Occurrences {
+		private final String description;
+		private final long firstSeen = System.nanoTime();
+		private int count;
+		private final Set<String> commands = new LinkedHashSet<>();
+		private final Set<String> authors = new LinkedHashSet<>();
+
+		private Occurrences(String description) {
+			this.description = description;
+		}
+	}
+
+	private static final int MAX_SAMPLES = 5;
+
+	private static String describe(ExceptionWithBlame e) {
+		return e.getException().getClass().getSimpleName() + ": " + e.getException().getMessage()
+				+ e.getBlame().map(s -> " (" + s + ")").orElse("");
+	}
+
+	private static String limit(Set<String> values) {
+		String ret = values.stream().collect(Collectors.joining("\n"));
+		return ret.length() <= MessageEmbed.VALUE_MAX_LENGTH ? ret
+				: ret.substring(0, MessageEmbed.VALUE_MAX_LENGTH - 3) + "...";
+	}
+
+	private final Duration window;
+	private final Map<String, Occurrences> occurrences = new LinkedHashMap<>();
+	private long windowStart = System.nanoTime();
+
+	public ExceptionAggregator(Duration window) {
+		this.window = window;
+	}
+
+	/**
+	 * Records the exceptions of the report.
+	 *
+	 * @return true if the report should be sent, false if it only repeats
+	 *         exceptions that were already reported
+	 */
+	public synchronized boolean admit(CommandReporting reporting) {
+		List<ExceptionWithBlame> exceptions = reporting.getExceptionsWithBlame();
+		if (exceptions.isEmpty()) {
+			return true;
+		}
+		boolean fresh = false;
+		for (ExceptionWithBlame e : exceptions) {
+			if (!occurrences.containsKey(e.getFingerprint())) {
+				occurrences.put(e.getFingerprint(), new Occurrences(describe(e)));
+				fresh = true;
+			}
+		}
+		if (fresh) {
+			return true;
+		}
+		for (ExceptionWithBlame e : exceptions) {
+			Occurrences o = occurrences.get(e.getFingerprint());
+			o.count++;
+			// Only samples are kept, so most repeats are never rendered. The path
+			// is enough here, the full command would have to be rendered
+			if (o.commands.size() < MAX_SAMPLES && reporting.getCommandPath() != null) {
+				o.commands.add("/" + reporting.getCommandPath());
+			}
+			if (o.authors.size() < MAX_SAMPLES && reporting.getAuthor() != null) {
+				o.authors.add(reporting.getAuthor());
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Summarizes the repeats held back so far without waiting for the window to
+	 * pass, so they are not lost when the bot stops.
+	 *
+	 * @return summaries of the exceptions that repeated
+	 */
+	public synchronized List<MessageEmbed> flush() {
+		return summarize(System.nanoTime());
+	}
+
+	/**
+	 * @return summaries of the exceptions that repeated, once the window has
+	 *         passed, otherwise nothing
+	 */
+	public synchronized List<MessageEmbed> poll() {
+		long now = System.nanoTime();
+		if (now - windowStart < window.toNanos()) {
+			return List.of();
+		}
+		return summarize(now);
+	}
+
+	private List<MessageEmbed> summarize(long now) {
+		long seconds = TimeUnit.NANOSECONDS.toSeconds(now - windowStart);
+		windowStart = now;
+
+		List<MessageEmbed> ret = new ArrayList<>();
+		for (Iterator<Map.Entry<String, Occurrences>> it = occurrences.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Occurrences> entry = it.next();
+			Occurrences o = entry.getValue();
+			if (o.count == 0) {
+				if (now - o.firstSeen >= window.toNanos()) {
+					it.remove();
+				}
+				continue;
+			}
+			EmbedBuilder builder = new EmbedBuilder();
+			builder.setColor(Level.ERROR.getColor());
+			builder.setTimestamp(Instant.now());
+			builder.setTitle("Repeated " + o.count + " times in the last " + seconds + "s");
+			builder.setDescription(
+					"`" + entry.getKey() + "` " + o.description.substring(0, Math.min(o.description.length(), 1000)));
+			if (!o.commands.isEmpty()) {
+				builder.addField("Commands", limit(o.commands), false);
+			}
+			if (!o.authors.isEmpty()) {
+				builder.addField("Sample Authors", limit(o.authors), false);
+			}
+			ret.add(builder.build());
+			o.count = 0;
+			o.commands.clear();
+			o.authors.clear();
+		}
+		return ret;
+	}
+}
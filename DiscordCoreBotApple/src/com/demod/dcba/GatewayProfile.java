@@ -0,0 +1,130 @@
+package com.demod.dcba;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.sharding.DefaultShardManagerBuilder;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
+
+/**
+ * The gateway intents and JDA caches a bot is started with, worked out from
+ * the handlers it registered.
+ */
+final class GatewayProfile {
+	private static final Set<CacheFlag> DEFAULT_DISABLED = EnumSet.of(CacheFlag.ACTIVITY, CacheFlag.CLIENT_STATUS,
+			CacheFlag.ONLINE_STATUS);
+
+	// Rough heap cost per guild of a mid-sized guild, only used for logging
+	private static final Map<CacheFlag, Integer> CACHE_BYTES = new EnumMap<>(CacheFlag.class);
+	static {
+		CACHE_BYTES.put(CacheFlag.ACTIVITY, 2048);
+		CACHE_BYTES.put(CacheFlag.VOICE_STATE, 1024);
+		CACHE_BYTES.put(CacheFlag.EMOJI, 12288);
+		CACHE_BYTES.put(CacheFlag.STICKER, 2048);
+		CACHE_BYTES.put(CacheFlag.CLIENT_STATUS, 512);
+		CACHE_BYTES.put(CacheFlag.MEMBER_OVERRIDES, 6144);
+		CACHE_BYTES.put(CacheFlag.ROLE_TAGS, 256);
+		CACHE_BYTES.put(CacheFlag.FORUM_TAGS, 512);
+		CACHE_BYTES.put(CacheFlag.ONLINE_STATUS, 512);
+		CACHE_BYTES.put(CacheFlag.SCHEDULED_EVENTS, 1024);
+	}
+	private static final int MEMBER_BYTES = 1536;
+	// Members in voice plus the owner, as cached by MemberCachePolicy.DEFAULT
+	private static final int DEFAULT_MEMBERS = 4;
+
+	public static GatewayProfile create(CacheProfile profile, boolean reactions, boolean privateMessages,
+			Set<GatewayIntent> extraIntents) {
+		if (profile == CacheProfile.DEFAULT) {
+			EnumSet<GatewayIntent> intents = GatewayIntent.getIntents(GatewayIntent.DEFAULT);
+			intents.addAll(extraIntents);
+			EnumSet<CacheFlag> cacheFlags = EnumSet.allOf(CacheFlag.class);
+			cacheFlags.removeAll(DEFAULT_DISABLED);
+			return new GatewayProfile(profile, intents, cacheFlags, MemberCachePolicy.DEFAULT, DEFAULT_MEMBERS);
+		}
+
+		// Without GUILDS there are no guild or channel events, so the guild and
+		// channel caches would stay empty
+		EnumSet<GatewayIntent> intents = EnumSet.of(GatewayIntent.GUILDS);
+		if (reactions) {
+			intents.add(GatewayIntent.GUILD_MESSAGE_REACTIONS);
+			intents.add(GatewayIntent.DIRECT_MESSAGE_REACTIONS);
+		}
+		if (privateMessages) {
+			intents.add(GatewayIntent.DIRECT_MESSAGES);
+		}
+		intents.addAll(extraIntents);
+
+		EnumSet<CacheFlag> cacheFlags = EnumSet.noneOf(CacheFlag.class);
+		if (profile == CacheProfile.DERIVED) {
+			for (CacheFlag flag : CacheFlag.values()) {
+				if (!DEFAULT_DISABLED.contains(flag)
+						&& (flag.getRequiredIntent() == null || intents.contains(flag.getRequiredIntent()))) {
+					cacheFlags.add(flag);
+				}
+			}
+			return new GatewayProfile(profile, intents, cacheFlags, MemberCachePolicy.OWNER, 1);
+		}
+		return new GatewayProfile(profile, intents, cacheFlags, MemberCachePolicy.NONE, 0);
+	}
+
+	private final CacheProfile profile;
+	private final EnumSet<GatewayIntent> intents;
+	private final EnumSet<CacheFlag> cacheFlags;
+	private final MemberCachePolicy memberCachePolicy;
+	private final int cachedMembers;
+
+	private GatewayProfile(CacheProfile profile, EnumSet<GatewayIntent> intents, EnumSet<CacheFlag> cacheFlags,
+			MemberCachePolicy memberCachePolicy, int cachedMembers) {
+		this.profile = profile;
+		this.intents = intents;
+		this.cacheFlags = cacheFlags;
+		this.memberCachePolicy = memberCachePolicy;
+		this.cachedMembers = cachedMembers;
+	}
+
+	public DefaultShardManagerBuilder apply(DefaultShardManagerBuilder builder) {
+		return builder.enableCache(cacheFlags)//
+				.disableCache(EnumSet.complementOf(cacheFlags))//
+				.setMemberCachePolicy(memberCachePolicy)//
+				.setChunkingFilter(ChunkingFilter.NONE);
+	}
+
+	public JDABuilder apply(JDABuilder builder) {
+		return builder.enableCache(cacheFlags)//
+				.disableCache(EnumSet.complementOf(cacheFlags))//
+				.setMemberCachePolicy(memberCachePolicy)//
+				.setChunkingFilter(ChunkingFilter.NONE);
+	}
+
+	/**
+	 * Rough heap used per guild by the caches of this profile.
+	 */
+	public int estimateBytesPerGuild() {
+		return cacheFlags.stream().mapToInt(flag -> CACHE_BYTES.getOrDefault(flag, 0)).sum()
+				+ cachedMembers * MEMBER_BYTES;
+	}
+
+	public EnumSet<CacheFlag> getCacheFlags() {
+		return cacheFlags;
+	}
+
+	public EnumSet<GatewayIntent> getIntents() {
+		return intents;
+	}
+
+	public CacheProfile getProfile() {
+		return profile;
+	}
+
+	@Override
+	public String toString() {
+		return profile + " intents " + intents + ", cache " + cacheFlags + ", " + cachedMembers
+				+ " members per guild";
+	}
+}
@@ -0,0 +1,72 @@
+package com.demod.dcba;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * What a running handler needs to fork subtasks: where to run them, the
+ * deadline and cancellation they inherit, and the reporting they blame
+ * exceptions into. Bound to the handler's thread by DCBA.
+ */
+final class InteractionContext {
+	private static final ThreadLocal<InteractionContext> CURRENT = new ThreadLocal<>();
+
+	static <T> T call(InteractionContext context, Callable<T> callable) throws Exception {
+		InteractionContext previous = CURRENT.get();
+		CURRENT.set(context);
+		try {
+			return callable.call();
+		} finally {
+			if (previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previous);
+			}
+		}
+	}
+
+	static Optional<InteractionContext> current() {
+		return Optional.ofNullable(CURRENT.get());
+	}
+
+	private final DeadlineScheduler subtaskScheduler;
+	private final InteractionType type;
+	private final Instant deadline;
+	private final CommandReporting reporting;
+	private final Optional<CompletableFuture<?>> task;
+
+	InteractionContext(DeadlineScheduler subtaskScheduler, InteractionType type, Instant deadline,
+			CommandReporting reporting, Optional<CompletableFuture<?>> task) {
+		this.subtaskScheduler = subtaskScheduler;
+		this.type = type;
+		this.deadline = deadline;
+		this.reporting = reporting;
+		this.task = task;
+	}
+
+	Instant getDeadline() {
+		return deadline;
+	}
+
+	CommandReporting getReporting() {
+		return reporting;
+	}
+
+	DeadlineScheduler getSubtaskScheduler() {
+		return subtaskScheduler;
+	}
+
+	Optional<CompletableFuture<?>> getTask() {
+		return task;
+	}
+
+	InteractionType getType() {
+		return type;
+	}
+
+	InteractionContext withTask(CompletableFuture<?> task) {
+		return new InteractionContext(subtaskScheduler, type, deadline, reporting, Optional.of(task));
+	}
+}
@@ -0,0 +1,41 @@
+package com.demod.dcba;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+public enum InteractionType {
+	SLASH_COMMAND(2, Duration.ofMinutes(15)), //
+	MESSAGE_CONTEXT(2, Duration.ofSeconds(3)), //
+	BUTTON(1, Duration.ofSeconds(3)), //
+	STRING_SELECT(1, Duration.ofSeconds(3)), //
+	AUTO_COMPLETE(0, Duration.ofSeconds(3)), //
+	PRIVATE_MESSAGE(0, null);
+
+	public static final int MAX_PRIORITY = 2;
+
+	private final int priority;
+	private final Optional<Duration> responseWindow;
+
+	private InteractionType(int priority, Duration responseWindow) {
+		this.priority = priority;
+		this.responseWindow = Optional.ofNullable(responseWindow);
+	}
+
+	/**
+	 * The last moment an interaction created at the given time can still be
+	 * answered. Slash commands are deferred by DCBA, so they get the 15 minute
+	 * window of the interaction hook instead of the initial 3 seconds.
+	 */
+	public Instant getDeadline(Instant created) {
+		return responseWindow.map(created::plus).orElse(Instant.MAX);
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public Optional<Duration> getResponseWindow() {
+		return responseWindow;
+	}
+}
@@ -0,0 +1,113 @@
+package com.demod.dcba;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks with the same key one after another, while tasks with different
+ * keys run in parallel. A key is busy until the stage returned by its current
+ * task completes, and only then is the next task for that key started.
+ * Tasks that complete synchronously start the next one from a loop instead of
+ * recursing, so a long queue cannot overflow the stack.
+ */
+public class KeyedSerialExecutor {
+	private static final ThreadLocal<Deque<Runnable>> TRAMPOLINE = new ThreadLocal<>();
+
+	private final ConcurrentHashMap<Long, Deque<Runnable>> queues = new ConcurrentHashMap<>();
+
+	public int getActiveKeys() {
+		return queues.size();
+	}
+
+	public int getQueued() {
+		return queues.values().stream().mapToInt(Deque::size).sum();
+	}
+
+	private void next(long key) {
+		Runnable[] next = new Runnable[1];
+		queues.compute(key, (k, queue) -> {
+			next[0] = queue.pollFirst();
+			return next[0] == null ? null : queue;
+		});
+		if (next[0] != null) {
+			run(next[0]);
+		}
+	}
+
+	/**
+	 * Takes the next turn of the key without running anything yet, so the
+	 * order is fixed before the work itself is ready to start.
+	 *
+	 * @param done
+	 *            the key stays busy until this completes
+	 * @return completes once it is this reservation's turn
+	 */
+	public CompletableFuture<Void> reserve(long key, CompletionStage<?> done) {
+		CompletableFuture<Void> turn = new CompletableFuture<>();
+		submit(key, () -> {
+			turn.complete(null);
+			return done;
+		});
+		return turn;
+	}
+
+	private void run(Runnable start) {
+		Deque<Runnable> pending = TRAMPOLINE.get();
+		if (pending != null) {
+			pending.addLast(start);
+			return;
+		}
+		pending = new ArrayDeque<>();
+		TRAMPOLINE.set(pending);
+		try {
+			for (Runnable next = start; next != null; next = pending.pollFirst()) {
+				next.run();
+			}
+		} finally {
+			TRAMPOLINE.remove();
+		}
+	}
+
+	public <T> CompletableFuture<T> submit(long key, Supplier<? extends CompletionStage<T>> task) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Runnable start = () -> {
+			CompletionStage<T> stage;
+			try {
+				stage = task.get();
+			} catch (Throwable e) {
+				stage = CompletableFuture.failedFuture(e);
+			}
+			stage.whenComplete((r, t) -> {
+				next(key);
+				if (t != null) {
+					result.completeExceptionally(t);
+				} else {
+					result.complete(r);
+				}
+			});
+		};
+
+		boolean[] idle = new boolean[1];
+		queues.compute(key, (k, queue) -> {
+			if (queue == null) {
+				idle[0] = true;
+				return new ArrayDeque<>();
+			}
+			queue.addLast(start);
+			return queue;
+		});
+		if (idle[0]) {
+			run(start);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return queues.size() + " active keys, " + getQueued() + " queued";
+	}
+}
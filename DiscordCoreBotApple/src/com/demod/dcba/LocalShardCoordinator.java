@@ -0,0 +1,148 @@
+package com.demod.dcba;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * In-memory {@link ShardCoordinator}. Members are ordered by when they joined
+ * and each gets a contiguous range of the shards. A shard is only handed to
+ * its new owner once no other live member reports running it or was last
+ * assigned it, so a rebalance never has two processes connected as the same
+ * shard.
+ * <p>
+ * Can be shared directly by bots in one JVM, or served to other processes
+ * with {@link ShardCoordinatorServer}.
+ */
+public class LocalShardCoordinator implements ShardCoordinator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LocalShardCoordinator.class);
+
+	public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(15);
+
+	private static class Member {
+		private long lastSeen;
+		private ShardStats stats;
+		// The member may be starting these without having reported them yet
+		private List<Integer> assigned = ImmutableList.of();
+
+		private Member(long lastSeen, ShardStats stats) {
+			this.lastSeen = lastSeen;
+			this.stats = stats;
+		}
+	}
+
+	private final int shardsTotal;
+	private final long timeoutNanos;
+	private final LongSupplier nanoTime;
+	private final Map<String, Member> members = new LinkedHashMap<>();
+
+	public LocalShardCoordinator(int shardsTotal) {
+		this(shardsTotal, DEFAULT_TIMEOUT);
+	}
+
+	public LocalShardCoordinator(int shardsTotal, Duration timeout) {
+		this(shardsTotal, timeout, System::nanoTime);
+	}
+
+	LocalShardCoordinator(int shardsTotal, Duration timeout, LongSupplier nanoTime) {
+		if (shardsTotal < 1) {
+			throw new IllegalArgumentException("shardsTotal must be at least 1");
+		}
+		this.shardsTotal = shardsTotal;
+		this.timeoutNanos = timeout.toNanos();
+		this.nanoTime = nanoTime;
+	}
+
+	private ShardAssignment assign(String memberId) {
+		List<String> ids = new ArrayList<>(members.keySet());
+		int index = ids.indexOf(memberId);
+		int from = shardsTotal * index / ids.size();
+		int to = shardsTotal * (index + 1) / ids.size();
+
+		List<Integer> shardIds = new ArrayList<>();
+		for (int shardId = from; shardId < to; shardId++) {
+			if (!isRunningElsewhere(memberId, shardId)) {
+				shardIds.add(shardId);
+			}
+		}
+		members.get(memberId).assigned = ImmutableList.copyOf(shardIds);
+		return new ShardAssignment(shardsTotal, shardIds);
+	}
+
+	private void expire() {
+		long now = nanoTime.getAsLong();
+		for (Iterator<Map.Entry<String, Member>> it = members.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Member> entry = it.next();
+			if (now - entry.getValue().lastSeen > timeoutNanos) {
+				LOGGER.warn("Member " + entry.getKey() + " timed out, reassigning shards "
+						+ entry.getValue().stats.getShardIds());
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized List<String> getMembers() {
+		expire();
+		return ImmutableList.copyOf(members.keySet());
+	}
+
+	public int getShardsTotal() {
+		return shardsTotal;
+	}
+
+	@Override
+	public synchronized List<ShardStats> getStats() {
+		expire();
+		return members.values().stream().map(m -> m.stats).collect(ImmutableList.toImmutableList());
+	}
+
+	@Override
+	public synchronized ShardAssignment heartbeat(ShardStats stats) {
+		expire();
+		Member member = members.get(stats.getMemberId());
+		if (member == null) {
+			LOGGER.info("Member " + stats.getMemberId() + " rejoined");
+			members.put(stats.getMemberId(), new Member(nanoTime.getAsLong(), stats));
+		} else {
+			member.lastSeen = nanoTime.getAsLong();
+			member.stats = stats;
+		}
+		return assign(stats.getMemberId());
+	}
+
+	private boolean isRunningElsewhere(String memberId, int shardId) {
+		for (Map.Entry<String, Member> entry : members.entrySet()) {
+			Member member = entry.getValue();
+			if (!entry.getKey().equals(memberId)
+					&& (member.stats.getShardIds().contains(shardId) || member.assigned.contains(shardId))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized ShardAssignment join(String memberId) {
+		expire();
+		members.computeIfAbsent(memberId,
+				k -> new Member(nanoTime.getAsLong(), new ShardStats(memberId, ImmutableList.of(), 0, 0)));
+		LOGGER.info("Member " + memberId + " joined, " + members.size() + " members");
+		return assign(memberId);
+	}
+
+	@Override
+	public synchronized void leave(String memberId) {
+		if (members.remove(memberId) != null) {
+			LOGGER.info("Member " + memberId + " left, " + members.size() + " members");
+		}
+	}
+}
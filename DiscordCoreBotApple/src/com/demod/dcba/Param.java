@@ -0,0 +1,27 @@
+package com.demod.dcba;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Describes an option of a {@link SlashCommand} method. The option type comes
+ * from the parameter type ({@code long}, {@code int}, {@code double},
+ * {@code boolean}, {@link String}, or a JDA user, member, role, channel,
+ * mentionable or attachment), and wrapping it in {@link java.util.Optional}
+ * makes the option optional.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.PARAMETER)
+public @interface Param {
+	String description() default "";
+
+	/**
+	 * Defaults to the parameter name. Must be lowercase, which the processor
+	 * checks at compile time.
+	 */
+	String name() default "";
+}
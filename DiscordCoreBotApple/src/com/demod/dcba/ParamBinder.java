@@ -0,0 +1,319 @@
+package com.demod.dcba;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+
+import com.google.common.collect.ImmutableMap;
+
+import net.dv8tion.jda.api.entities.IMentionable;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message.Attachment;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.unions.GuildChannelUnion;
+import net.dv8tion.jda.api.interactions.commands.CommandInteractionPayload;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+
+/**
+ * Binds the options of a command interaction into a record whose components
+ * are named after the options. Names, types and required-ness are checked
+ * against the command's {@link SlashCommandOptionDefinition}s once when the
+ * binder is compiled, along with a method handle chain that converts each
+ * option with a typed extractor. Binding then walks the interaction's options
+ * a single time and runs the chain, so primitive options reach the record
+ * constructor without being boxed.
+ * <p>
+ * Required options map to plain components ({@code long}, {@code int},
+ * {@code double}, {@code boolean}, {@link String}, {@link User},
+ * {@link Member}, {@link Role}, {@link GuildChannelUnion},
+ * {@link IMentionable}, {@link Attachment}). Optional options map to
+ * {@link OptionalLong}, {@link OptionalDouble} or {@link Optional} of one of
+ * the above.
+ */
+class ParamBinder<R extends Record> {
+	private enum Kind {
+		LONG(long.class, EnumSet.of(OptionType.INTEGER)), //
+		INT(int.class, EnumSet.of(OptionType.INTEGER)), //
+		DOUBLE(double.class, EnumSet.of(OptionType.NUMBER, OptionType.INTEGER)), //
+		BOOLEAN(boolean.class, EnumSet.of(OptionType.BOOLEAN)), //
+		STRING(String.class, EnumSet.allOf(OptionType.class)), //
+		USER(User.class, EnumSet.of(OptionType.USER, OptionType.MENTIONABLE)), //
+		MEMBER(Member.class, EnumSet.of(OptionType.USER, OptionType.MENTIONABLE)), //
+		ROLE(Role.class, EnumSet.of(OptionType.ROLE, OptionType.MENTIONABLE)), //
+		CHANNEL(GuildChannelUnion.class, EnumSet.of(OptionType.CHANNEL)), //
+		MENTIONABLE(IMentionable.class, EnumSet.of(OptionType.MENTIONABLE, OptionType.USER, OptionType.ROLE)), //
+		ATTACHMENT(Attachment.class, EnumSet.of(OptionType.ATTACHMENT));
+
+		private static Kind of(Type type) {
+			for (Kind kind : values()) {
+				if (kind.type.equals(type)) {
+					return kind;
+				}
+			}
+			return null;
+		}
+
+		private final Class<?> type;
+		private final EnumSet<OptionType> optionTypes;
+
+		private Kind(Class<?> type, EnumSet<OptionType> optionTypes) {
+			this.type = type;
+			this.optionTypes = optionTypes;
+		}
+	}
+
+	private enum Wrap {
+		NONE, OPTIONAL, OPTIONAL_LONG, OPTIONAL_DOUBLE
+	}
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private static boolean asBoolean(String name, OptionMapping option) {
+		try {
+			return required(name, option).getAsBoolean();
+		} catch (IllegalStateException e) {
+			throw invalid(name, e);
+		}
+	}
+
+	private static double asDouble(String name, OptionMapping option) {
+		try {
+			return required(name, option).getAsDouble();
+		} catch (IllegalStateException e) {
+			throw invalid(name, e);
+		}
+	}
+
+	private static int asInt(String name, OptionMapping option) {
+		try {
+			return Math.toIntExact(required(name, option).getAsLong());
+		} catch (IllegalStateException | ArithmeticException e) {
+			throw invalid(name, e);
+		}
+	}
+
+	private static long asLong(String name, OptionMapping option) {
+		try {
+			return required(name, option).getAsLong();
+		} catch (IllegalStateException e) {
+			throw invalid(name, e);
+		}
+	}
+
+	private static Object asObject(Kind kind, String name, OptionMapping option) {
+		Object value = getObject(kind, name, option);
+		if (value == null) {
+			throw missing(name);
+		}
+		return value;
+	}
+
+	private static Optional<?> asOptional(Kind kind, String name, OptionMapping option) {
+		return Optional.ofNullable(getObject(kind, name, option));
+	}
+
+	private static OptionalDouble asOptionalDouble(String name, OptionMapping option) {
+		return option == null ? OptionalDouble.empty() : OptionalDouble.of(asDouble(name, option));
+	}
+
+	private static OptionalLong asOptionalLong(String name, OptionMapping option) {
+		return option == null ? OptionalLong.empty() : OptionalLong.of(asLong(name, option));
+	}
+
+	/**
+	 * The typed conversion of one option, as (OptionMapping) returning the
+	 * component type. Primitives are returned as primitives, so they reach the
+	 * constructor without being boxed.
+	 */
+	private static MethodHandle extractor(Kind kind, Wrap wrap, String name) throws ReflectiveOperationException {
+		MethodHandle ret;
+		switch (wrap) {
+		case OPTIONAL_LONG:
+			ret = LOOKUP.findStatic(ParamBinder.class, "asOptionalLong",
+					MethodType.methodType(OptionalLong.class, String.class, OptionMapping.class));
+			break;
+		case OPTIONAL_DOUBLE:
+			ret = LOOKUP.findStatic(ParamBinder.class, "asOptionalDouble",
+					MethodType.methodType(OptionalDouble.class, String.class, OptionMapping.class));
+			break;
+		case OPTIONAL:
+			ret = MethodHandles.insertArguments(LOOKUP.findStatic(ParamBinder.class, "asOptional",
+					MethodType.methodType(Optional.class, Kind.class, String.class, OptionMapping.class)), 0, kind);
+			break;
+		default:
+			switch (kind) {
+			case LONG:
+				ret = LOOKUP.findStatic(ParamBinder.class, "asLong",
+						MethodType.methodType(long.class, String.class, OptionMapping.class));
+				break;
+			case INT:
+				ret = LOOKUP.findStatic(ParamBinder.class, "asInt",
+						MethodType.methodType(int.class, String.class, OptionMapping.class));
+				break;
+			case DOUBLE:
+				ret = LOOKUP.findStatic(ParamBinder.class, "asDouble",
+						MethodType.methodType(double.class, String.class, OptionMapping.class));
+				break;
+			case BOOLEAN:
+				ret = LOOKUP.findStatic(ParamBinder.class, "asBoolean",
+						MethodType.methodType(boolean.class, String.class, OptionMapping.class));
+				break;
+			default:
+				ret = MethodHandles.insertArguments(LOOKUP.findStatic(ParamBinder.class, "asObject",
+						MethodType.methodType(Object.class, Kind.class, String.class, OptionMapping.class)), 0, kind);
+				ret = ret.asType(MethodType.methodType(kind.type, String.class, OptionMapping.class));
+			}
+		}
+		return MethodHandles.insertArguments(ret, 0, name);
+	}
+
+	private static Object getObject(Kind kind, String name, OptionMapping option) {
+		if (option == null) {
+			return null;
+		}
+		try {
+			switch (kind) {
+			case STRING:
+				return option.getAsString();
+			case USER:
+				return option.getAsUser();
+			case MEMBER:
+				return option.getAsMember();
+			case ROLE:
+				return option.getAsRole();
+			case CHANNEL:
+				return option.getAsChannel();
+			case MENTIONABLE:
+				return option.getAsMentionable();
+			case ATTACHMENT:
+				return option.getAsAttachment();
+			default:
+				throw new AssertionError(kind);
+			}
+		} catch (IllegalStateException e) {
+			throw invalid(name, e);
+		}
+	}
+
+	private static IllegalArgumentException invalid(String name, RuntimeException e) {
+		return new IllegalArgumentException("Invalid value for option " + name + ": " + e.getMessage(), e);
+	}
+
+	private static IllegalArgumentException missing(String name) {
+		return new IllegalArgumentException("Missing required option " + name + "!");
+	}
+
+	private static OptionMapping required(String name, OptionMapping option) {
+		if (option == null) {
+			throw missing(name);
+		}
+		return option;
+	}
+
+	private final Class<R> type;
+	private final ImmutableMap<String, Integer> indexByName;
+	private final MethodHandle constructor;
+
+	ParamBinder(Class<R> type, List<SlashCommandOptionDefinition> options) {
+		if (!type.isRecord()) {
+			throw new IllegalArgumentException(type.getName() + " is not a record!");
+		}
+		this.type = type;
+		RecordComponent[] components = type.getRecordComponents();
+		ImmutableMap.Builder<String, Integer> indexByName = ImmutableMap.builder();
+		Class<?>[] componentTypes = new Class<?>[components.length];
+		Kind[] kinds = new Kind[components.length];
+		Wrap[] wraps = new Wrap[components.length];
+		for (int i = 0; i < components.length; i++) {
+			RecordComponent component = components[i];
+			String name = component.getName();
+			SlashCommandOptionDefinition option = options.stream().filter(o -> o.getName().equals(name)).findAny()
+					.orElseThrow(() -> new IllegalArgumentException(
+							type.getSimpleName() + "." + name + " does not match any option!"));
+
+			Wrap wrap;
+			Kind kind;
+			Class<?> raw = component.getType();
+			if (raw == OptionalLong.class) {
+				wrap = Wrap.OPTIONAL_LONG;
+				kind = Kind.LONG;
+			} else if (raw == OptionalDouble.class) {
+				wrap = Wrap.OPTIONAL_DOUBLE;
+				kind = Kind.DOUBLE;
+			} else if (raw == Optional.class && component.getGenericType() instanceof ParameterizedType) {
+				wrap = Wrap.OPTIONAL;
+				kind = Kind.of(((ParameterizedType) component.getGenericType()).getActualTypeArguments()[0]);
+				if (kind != null && kind.type.isPrimitive()) {
+					kind = null;
+				}
+			} else {
+				wrap = Wrap.NONE;
+				kind = Kind.of(raw);
+			}
+			if (kind == null || !kind.optionTypes.contains(option.getType())) {
+				throw new IllegalArgumentException(type.getSimpleName() + "." + name + " cannot hold a "
+						+ option.getType() + " option!");
+			}
+			if (option.isRequired() == (wrap != Wrap.NONE)) {
+				throw new IllegalArgumentException(type.getSimpleName() + "." + name + " must "
+						+ (option.isRequired() ? "not " : "") + "be optional, the option is "
+						+ (option.isRequired() ? "required" : "optional") + "!");
+			}
+
+			indexByName.put(name, i);
+			componentTypes[i] = raw;
+			kinds[i] = kind;
+			wraps[i] = wrap;
+		}
+		this.indexByName = indexByName.build();
+
+		try {
+			Constructor<R> canonical = type.getDeclaredConstructor(componentTypes);
+			canonical.setAccessible(true);
+			// Each component reads its own slot of the options array, then the
+			// array is fed to every component at once
+			MethodHandle element = MethodHandles.arrayElementGetter(OptionMapping[].class);
+			MethodHandle[] filters = new MethodHandle[components.length];
+			for (int i = 0; i < components.length; i++) {
+				filters[i] = MethodHandles.filterArguments(extractor(kinds[i], wraps[i], components[i].getName()), 0,
+						MethodHandles.insertArguments(element, 1, i));
+			}
+			MethodHandle filtered = MethodHandles.filterArguments(MethodHandles.lookup().unreflectConstructor(canonical),
+					0, filters);
+			constructor = MethodHandles
+					.permuteArguments(filtered, MethodType.methodType(type, OptionMapping[].class),
+							new int[components.length])
+					.asType(MethodType.methodType(Object.class, OptionMapping[].class));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IllegalArgumentException("Cannot access the constructor of " + type.getName(), e);
+		}
+	}
+
+	R bind(CommandInteractionPayload payload) {
+		OptionMapping[] options = new OptionMapping[indexByName.size()];
+		for (OptionMapping option : payload.getOptions()) {
+			Integer index = indexByName.get(option.getName());
+			if (index != null) {
+				options[index] = option;
+			}
+		}
+		try {
+			return type.cast(constructor.invokeExact(options));
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package com.demod.dcba;
+
+import java.time.Duration;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-user token bucket, keyed by user snowflake. Each bucket is a single
+ * theoretical arrival time (GCRA) that is advanced with compare-and-set, so
+ * acquiring never takes a lock. Buckets that have fully refilled are purged
+ * periodically to keep memory bounded, by retiring them with the same
+ * compare-and-set so a concurrent acquire is never lost.
+ */
+public class RateLimiter {
+	private static final long PURGE_INTERVAL_NANOS = Duration.ofMinutes(1).toNanos();
+	// Set on a purged bucket, so a caller still holding it looks it up again
+	private static final long RETIRED = Long.MIN_VALUE;
+
+	private final int permits;
+	private final Duration period;
+	private final long emissionNanos;
+	private final long toleranceNanos;
+	private final LongSupplier nanoTime;
+
+	private final ConcurrentHashMap<Long, AtomicLong> buckets = new ConcurrentHashMap<>();
+	private final AtomicLong lastPurge;
+	private final LongAdder allowed = new LongAdder();
+	private final LongAdder limited = new LongAdder();
+
+	public RateLimiter(int permits, Duration period) {
+		this(permits, period, System::nanoTime);
+	}
+
+	RateLimiter(int permits, Duration period, LongSupplier nanoTime) {
+		if (permits < 1) {
+			throw new IllegalArgumentException("permits must be at least 1");
+		}
+		if (period.isNegative() || period.isZero()) {
+			throw new IllegalArgumentException("period must be positive");
+		}
+		this.permits = permits;
+		this.period = period;
+		this.emissionNanos = period.toNanos() / permits;
+		this.toleranceNanos = period.toNanos() - emissionNanos;
+		this.nanoTime = nanoTime;
+		lastPurge = new AtomicLong(nanoTime.getAsLong());
+	}
+
+	public long getAllowed() {
+		return allowed.sum();
+	}
+
+	private AtomicLong getBucket(long userId, long now) {
+		AtomicLong tat = buckets.get(userId);
+		if (tat == null) {
+			tat = buckets.computeIfAbsent(userId, k -> new AtomicLong(now));
+		}
+		return tat;
+	}
+
+	public long getLimited() {
+		return limited.sum();
+	}
+
+	public Duration getPeriod() {
+		return period;
+	}
+
+	public int getPermits() {
+		return permits;
+	}
+
+	public int getTrackedUsers() {
+		return buckets.size();
+	}
+
+	private void purge(long now) {
+		long last = lastPurge.get();
+		if (now - last < PURGE_INTERVAL_NANOS || !lastPurge.compareAndSet(last, now)) {
+			return;
+		}
+		for (Entry<Long, AtomicLong> entry : buckets.entrySet()) {
+			AtomicLong tat = entry.getValue();
+			long current = tat.get();
+			// Only an idle bucket that nobody changed meanwhile is removed
+			if (current != RETIRED && current - now <= 0 && tat.compareAndSet(current, RETIRED)) {
+				buckets.remove(entry.getKey(), tat);
+			}
+		}
+	}
+
+	/**
+	 * Gives back a token taken by {@link #tryAcquire(long)}, for an interaction
+	 * that was turned away by a later check and never ran.
+	 */
+	public void refund(long userId) {
+		AtomicLong tat = buckets.get(userId);
+		if (tat == null) {
+			return;
+		}
+		long now = nanoTime.getAsLong();
+		while (true) {
+			long current = tat.get();
+			if (current == RETIRED || current - now <= 0) {
+				return;
+			}
+			long refunded = current - emissionNanos - now > 0 ? current - emissionNanos : now;
+			if (tat.compareAndSet(current, refunded)) {
+				allowed.decrement();
+				return;
+			}
+		}
+	}
+
+	public boolean tryAcquire(long userId) {
+		long now = nanoTime.getAsLong();
+		AtomicLong tat = getBucket(userId, now);
+		while (true) {
+			long current = tat.get();
+			if (current == RETIRED) {
+				buckets.remove(userId, tat);
+				tat = getBucket(userId, now);
+				continue;
+			}
+			long base = current - now > 0 ? current : now;
+			if (base - now > toleranceNanos) {
+				limited.increment();
+				return false;
+			}
+			if (tat.compareAndSet(current, base + emissionNanos)) {
+				allowed.increment();
+				purge(now);
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return permits + " per " + period.toMillis() + "ms, " + limited.sum() + " limited, " + buckets.size()
+				+ " users";
+	}
+}
@@ -0,0 +1,73 @@
+package com.demod.dcba;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Client for a coordinator served by {@link ShardCoordinatorServer}.
+ */
+public class RemoteShardCoordinator implements ShardCoordinator {
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+	private final URI baseUri;
+	private final HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+
+	public RemoteShardCoordinator(int port) {
+		this(URI.create("http://127.0.0.1:" + port));
+	}
+
+	public RemoteShardCoordinator(URI baseUri) {
+		this.baseUri = baseUri;
+	}
+
+	@Override
+	public List<ShardStats> getStats() throws IOException {
+		JSONArray json = new JSONArray(post("/stats", new JSONObject()));
+		ImmutableList.Builder<ShardStats> builder = ImmutableList.builder();
+		for (int i = 0; i < json.length(); i++) {
+			builder.add(ShardStats.fromJson(json.getJSONObject(i)));
+		}
+		return builder.build();
+	}
+
+	@Override
+	public ShardAssignment heartbeat(ShardStats stats) throws IOException {
+		return ShardAssignment.fromJson(new JSONObject(post("/heartbeat", stats.toJson())));
+	}
+
+	@Override
+	public ShardAssignment join(String memberId) throws IOException {
+		return ShardAssignment.fromJson(new JSONObject(post("/join", new JSONObject().put("member_id", memberId))));
+	}
+
+	@Override
+	public void leave(String memberId) throws IOException {
+		post("/leave", new JSONObject().put("member_id", memberId));
+	}
+
+	private String post(String path, JSONObject body) throws IOException {
+		HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(path)).timeout(REQUEST_TIMEOUT)
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body.toString())).build();
+		try {
+			HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 200) {
+				throw new IOException("Coordinator returned " + response.statusCode() + " for " + path);
+			}
+			return response.body();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while calling coordinator", e);
+		}
+	}
+}
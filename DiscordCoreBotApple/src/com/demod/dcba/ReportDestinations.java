@@ -0,0 +1,140 @@
+package com.demod.dcba;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.demod.dcba.ReportingPolicy.Destination;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+
+/**
+ * The channels reports are sent to. They are resolved once and kept until the
+ * channel is deleted or the gateway session is recreated. The private channel
+ * is opened asynchronously and retried a few times with a growing delay before
+ * giving up until the next report.
+ */
+final class ReportDestinations {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReportDestinations.class);
+	private static final int MAX_ATTEMPTS = 5;
+	private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+	private static final Duration RESOLVE_TIMEOUT = Duration.ofSeconds(15);
+
+	private final Supplier<JDA> jda;
+	private final Function<String, TextChannel> textChannelLookup;
+	private final Optional<String> userId;
+	private final Optional<String> channelId;
+
+	private CompletableFuture<PrivateChannel> privateChannel;
+	private volatile TextChannel textChannel;
+
+	public ReportDestinations(Supplier<JDA> jda, Function<String, TextChannel> textChannelLookup,
+			Optional<String> userId, Optional<String> channelId) {
+		this.jda = jda;
+		this.textChannelLookup = textChannelLookup;
+		this.userId = userId;
+		this.channelId = channelId;
+	}
+
+	/**
+	 * Resolves the destinations that are not cached yet. Waits for the private
+	 * channel to be opened, so this is only called from report senders.
+	 */
+	public Map<Destination, MessageChannel> get() {
+		Map<Destination, MessageChannel> ret = new EnumMap<>(Destination.class);
+		if (userId.isPresent()) {
+			try {
+				ret.put(Destination.USER, resolvePrivateChannel().get(RESOLVE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+			} catch (ExecutionException | TimeoutException e) {
+				LOGGER.warn("Reporting user " + userId.get() + " is not reachable", e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (channelId.isPresent()) {
+			TextChannel channel = textChannel;
+			if (channel == null) {
+				channel = textChannelLookup.apply(channelId.get());
+				textChannel = channel;
+			}
+			if (channel != null) {
+				ret.put(Destination.CHANNEL, channel);
+			} else {
+				LOGGER.warn("Reporting channel " + channelId.get() + " was not found");
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Forgets the cached channels, for example after the session was recreated
+	 * and the old entities went stale.
+	 */
+	public synchronized void invalidate() {
+		privateChannel = null;
+		textChannel = null;
+	}
+
+	public synchronized void onChannelDeleted(long id) {
+		TextChannel channel = textChannel;
+		if (channel != null && channel.getIdLong() == id) {
+			textChannel = null;
+		}
+		if (privateChannel != null && privateChannel.isDone() && !privateChannel.isCompletedExceptionally()
+				&& privateChannel.join().getIdLong() == id) {
+			privateChannel = null;
+		}
+	}
+
+	private void open(CompletableFuture<PrivateChannel> future, int attempt) {
+		Consumer<Throwable> retry = t -> {
+			if (attempt >= MAX_ATTEMPTS) {
+				future.completeExceptionally(t);
+				return;
+			}
+			long delay = RETRY_DELAY.toMillis() << (attempt - 1);
+			LOGGER.debug("Failed to open reporting channel, retrying in " + delay + " ms", t);
+			CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> open(future, attempt + 1));
+		};
+		try {
+			jda.get().openPrivateChannelById(userId.get()).queue(future::complete, retry);
+		} catch (RuntimeException e) {
+			retry.accept(e);
+		}
+	}
+
+	/**
+	 * Starts resolving the destinations without waiting, so the first report
+	 * does not pay for it.
+	 */
+	public void prefetch() {
+		if (userId.isPresent()) {
+			resolvePrivateChannel();
+		}
+		if (channelId.isPresent() && textChannel == null) {
+			textChannel = textChannelLookup.apply(channelId.get());
+		}
+	}
+
+	private synchronized CompletableFuture<PrivateChannel> resolvePrivateChannel() {
+		if (privateChannel == null || privateChannel.isCompletedExceptionally()) {
+			privateChannel = new CompletableFuture<>();
+			open(privateChannel, 1);
+		}
+		return privateChannel;
+	}
+}
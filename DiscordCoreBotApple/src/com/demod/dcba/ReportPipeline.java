@@ -0,0 +1,295 @@
+package com.demod.dcba;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.demod.dcba.CommandReporting.ExceptionWithBlame;
+import com.demod.dcba.CommandReporting.Level;
+import com.demod.dcba.ReportingPolicy.Destination;
+import com.google.common.collect.ImmutableList;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.utils.FileUpload;
+import net.dv8tion.jda.api.utils.SplitUtil;
+import net.dv8tion.jda.api.utils.SplitUtil.Strategy;
+
+/**
+ * Sends command reports from a bounded queue on background threads, so
+ * handlers never wait on reporting. Embeds of reports that are waiting
+ * together are packed into as few messages as Discord allows. Reports that do
+ * not fit in the queue are dropped and counted.
+ */
+public class ReportPipeline {
+	/**
+	 * Packs embeds into as few messages to one channel as Discord allows.
+	 */
+	private static class Packer {
+		private final MessageChannel channel;
+		private final List<MessageEmbed> pending = new ArrayList<>();
+		private int pendingLength;
+
+		private Packer(MessageChannel channel) {
+			this.channel = channel;
+		}
+
+		private void add(MessageEmbed embed) {
+			if (pending.size() == Message.MAX_EMBED_COUNT
+					|| pendingLength + embed.getLength() > MessageEmbed.EMBED_MAX_LENGTH_BOT) {
+				flush();
+			}
+			pending.add(embed);
+			pendingLength += embed.getLength();
+		}
+
+		private void flush() {
+			if (pending.isEmpty()) {
+				return;
+			}
+			channel.sendMessageEmbeds(ImmutableList.copyOf(pending))
+					.queue(null, t -> LOGGER.warn("Failed to send report", t));
+			pending.clear();
+			pendingLength = 0;
+		}
+	}
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReportPipeline.class);
+	private static final int MAX_BATCH = 100;
+	private static final long POLL_MILLIS = 100;
+
+	private static String stackTrace(Exception e) {
+		try (StringWriter sw = new StringWriter(); PrintWriter pw = new PrintWriter(sw)) {
+			e.printStackTrace(pw);
+			pw.flush();
+			return sw.toString();
+		} catch (IOException e1) {
+			e1.printStackTrace();
+			return "";
+		}
+	}
+
+	private final BlockingQueue<CommandReporting> queue;
+	private final Supplier<Map<Destination, MessageChannel>> destinations;
+	private final Optional<ExceptionAggregator> aggregator;
+	private final ReportingPolicy policy;
+	private final List<Thread> senders = new ArrayList<>();
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder aggregated = new LongAdder();
+	private volatile boolean shutdown;
+
+	/**
+	 * @param destinations
+	 *            resolves the channels to report to, called from a sender
+	 *            thread
+	 * @param aggregator
+	 *            collapses repeated exceptions into periodic summaries
+	 * @param policy
+	 *            samples the reports and routes them by level
+	 */
+	public ReportPipeline(int capacity, int senderThreads, Supplier<Map<Destination, MessageChannel>> destinations,
+			Optional<ExceptionAggregator> aggregator, ReportingPolicy policy) {
+		if (capacity < 1 || senderThreads < 1) {
+			throw new IllegalArgumentException("capacity and senderThreads must be at least 1");
+		}
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.destinations = destinations;
+		this.aggregator = aggregator;
+		this.policy = policy;
+		for (int i = 0; i < senderThreads; i++) {
+			Thread sender = new Thread(this::run, "dcba-report-" + i);
+			sender.setDaemon(true);
+			senders.add(sender);
+		}
+	}
+
+	public long getAggregated() {
+		return aggregated.sum();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	public int getQueued() {
+		return queue.size();
+	}
+
+	public long getSent() {
+		return sent.sum();
+	}
+
+	private void log(CommandReporting reporting) {
+		Set<String> logged = new HashSet<>();
+		for (ExceptionWithBlame e : reporting.getExceptionsWithBlame()) {
+			if (logged.add(e.getFingerprint() + e.getBlame())) {
+				LOGGER.error("Reported exception" + e.getBlame().map(b -> " (" + b + ")").orElse(""),
+						e.getException());
+			}
+		}
+	}
+
+	private void run() {
+		List<CommandReporting> batch = new ArrayList<>();
+		while (true) {
+			try {
+				CommandReporting first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, MAX_BATCH - 1);
+				}
+				List<MessageEmbed> summaries = aggregator.map(ExceptionAggregator::poll).orElse(List.of());
+				if (!batch.isEmpty() || !summaries.isEmpty()) {
+					send(batch, summaries);
+				} else if (shutdown) {
+					// Every sender flushes on its way out, after its own last batch
+					summaries = aggregator.map(ExceptionAggregator::flush).orElse(List.of());
+					if (!summaries.isEmpty()) {
+						send(List.of(), summaries);
+					}
+					return;
+				}
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception e) {
+				LOGGER.error("Failed to send reports", e);
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	private void send(List<CommandReporting> batch, List<MessageEmbed> summaries) {
+		List<CommandReporting> reports = new ArrayList<>();
+		for (CommandReporting reporting : batch) {
+			if (!reporting.isSampled()) {
+				// Sampled out reports are only queued for their stack traces
+				log(reporting);
+			} else if (aggregator.isEmpty() || aggregator.get().admit(reporting)) {
+				log(reporting);
+				reports.add(reporting);
+			} else {
+				aggregated.increment();
+				LOGGER.warn("Repeated exception " + reporting.getExceptionsWithBlame().stream()
+						.map(ExceptionWithBlame::getFingerprint).distinct().collect(Collectors.joining(", ")));
+			}
+		}
+		if (reports.isEmpty() && summaries.isEmpty()) {
+			return;
+		}
+
+		// Without anywhere to send them, the reports are never rendered
+		Map<Destination, MessageChannel> channels = destinations.get();
+		if (channels.isEmpty()) {
+			return;
+		}
+
+		Map<CommandReporting, List<MessageEmbed>> rendered = new IdentityHashMap<>();
+		for (CommandReporting reporting : reports) {
+			Set<Destination> route = policy.getDestinations(reporting.getLevel());
+			if (Collections.disjoint(route, channels.keySet())) {
+				continue;
+			}
+			try {
+				rendered.put(reporting, reporting.createEmbeds());
+				sent.increment();
+			} catch (Exception e) {
+				LOGGER.error("Failed to create report", e);
+				byte[] trace = stackTrace(e).getBytes();
+				for (Destination destination : route) {
+					MessageChannel channel = channels.get(destination);
+					if (channel != null) {
+						channel.sendMessage("Failed to create report!")
+								.addFiles(FileUpload.fromData(trace, "Exception.txt"))
+								.queue(null, t -> LOGGER.warn("Failed to send report", t));
+					}
+				}
+			}
+		}
+
+		for (Entry<Destination, MessageChannel> entry : channels.entrySet()) {
+			Packer packer = new Packer(entry.getValue());
+			if (policy.getDestinations(Level.ERROR).contains(entry.getKey())) {
+				summaries.forEach(packer::add);
+			}
+			for (CommandReporting reporting : reports) {
+				List<MessageEmbed> embeds = rendered.get(reporting);
+				if (embeds == null || !policy.getDestinations(reporting.getLevel()).contains(entry.getKey())) {
+					continue;
+				}
+				embeds.forEach(packer::add);
+
+				// Links belong right after the embeds of their report
+				List<String> urls = reporting.createURLList();
+				if (!embeds.isEmpty() && !urls.isEmpty()) {
+					packer.flush();
+					for (String urlReply : SplitUtil.split(urls.stream().collect(Collectors.joining("\n")),
+							Message.MAX_CONTENT_LENGTH, true, Strategy.NEWLINE, Strategy.ANYWHERE)) {
+						entry.getValue().sendMessage(urlReply)
+								.queue(null, t -> LOGGER.warn("Failed to send report", t));
+					}
+				}
+			}
+			packer.flush();
+		}
+	}
+
+	/**
+	 * Stops accepting reports and waits for the senders to empty the queue and
+	 * send the summaries of the repeats that were held back.
+	 *
+	 * @return false if reports were still queued after the timeout
+	 */
+	public boolean shutdown(Duration timeout) throws InterruptedException {
+		shutdown = true;
+		long deadline = System.nanoTime() + timeout.toNanos();
+		for (Thread sender : senders) {
+			sender.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+		}
+		return queue.isEmpty();
+	}
+
+	public void start() {
+		senders.forEach(Thread::start);
+	}
+
+	/**
+	 * Samples the report and queues it without blocking. It is only rendered
+	 * later on a sender thread, and not at all if it is sampled out, held back
+	 * or has nowhere to go.
+	 */
+	public void submit(CommandReporting reporting) {
+		if (reporting.isSuppressed() && reporting.getExceptionsWithBlame().isEmpty()) {
+			return;
+		}
+		if (!policy.decide(reporting) && reporting.getExceptionsWithBlame().isEmpty()) {
+			return;
+		}
+		reporting.finish();
+		if (shutdown || !queue.offer(reporting)) {
+			dropped.increment();
+			LOGGER.warn("Report queue is full, dropped a report (" + getDropped() + " total)");
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.demod.dcba;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.demod.dcba.CommandReporting.Level;
+
+/**
+ * Decides which reports are sent, and where to. Every report is sampled at the
+ * rate of its level, or of its command and level if one is set, and sent to
+ * the destinations routed for its level. By default every report is sent to
+ * every destination. For example, to only DM errors and send 1% of the
+ * successful commands to the channel:
+ *
+ * <pre>
+ * new ReportingPolicy().sample(Level.INFO, 0.01)//
+ * 		.route(Level.ERROR, Destination.USER)//
+ * 		.route(Level.INFO, Destination.CHANNEL);
+ * </pre>
+ *
+ * Reports that are sampled out are still counted.
+ */
+public class ReportingPolicy {
+	public static enum Destination {
+		USER, CHANNEL;
+	}
+
+	private static void checkRate(double rate) {
+		if (!(rate >= 0 && rate <= 1)) {
+			throw new IllegalArgumentException("rate must be between 0 and 1");
+		}
+	}
+
+	private final Map<Level, Double> levelRates = new EnumMap<>(Level.class);
+	private final Map<String, Map<Level, Double>> commandRates = new ConcurrentHashMap<>();
+	private final Map<Level, Set<Destination>> routes = new EnumMap<>(Level.class);
+	private final Map<Level, LongAdder> reported = new EnumMap<>(Level.class);
+	private final Map<Level, LongAdder> sampledOut = new EnumMap<>(Level.class);
+
+	public ReportingPolicy() {
+		for (Level level : Level.values()) {
+			levelRates.put(level, 1.0);
+			routes.put(level, EnumSet.allOf(Destination.class));
+			reported.put(level, new LongAdder());
+			sampledOut.put(level, new LongAdder());
+		}
+	}
+
+	/**
+	 * Samples the report, recording the decision on it.
+	 *
+	 * @return true if the report should be sent
+	 */
+	public boolean decide(CommandReporting reporting) {
+		Level level = reporting.getLevel();
+		double rate = getRate(reporting.getCommandPath(), level);
+		boolean sampled = rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+		reporting.setSampling(rate, sampled);
+		(sampled ? reported : sampledOut).get(level).increment();
+		return sampled;
+	}
+
+	public Set<Destination> getDestinations(Level level) {
+		return routes.get(level);
+	}
+
+	public double getRate(String commandPath, Level level) {
+		if (commandPath != null) {
+			Map<Level, Double> rates = commandRates.get(commandPath);
+			if (rates != null && rates.containsKey(level)) {
+				return rates.get(level);
+			}
+		}
+		return levelRates.get(level);
+	}
+
+	public long getReported(Level level) {
+		return reported.get(level).sum();
+	}
+
+	public long getSampledOut(Level level) {
+		return sampledOut.get(level).sum();
+	}
+
+	/**
+	 * Sends reports of the level only to the given destinations, or nowhere if
+	 * none are given.
+	 */
+	public ReportingPolicy route(Level level, Destination... destinations) {
+		Set<Destination> route = EnumSet.noneOf(Destination.class);
+		for (Destination destination : destinations) {
+			route.add(destination);
+		}
+		routes.put(level, route);
+		return this;
+	}
+
+	public ReportingPolicy sample(Level level, double rate) {
+		checkRate(rate);
+		levelRates.put(level, rate);
+		return this;
+	}
+
+	/**
+	 * Samples reports of the slash command at the level at a different rate
+	 * than the level.
+	 */
+	public ReportingPolicy sample(String commandPath, Level level, double rate) {
+		checkRate(rate);
+		commandRates.computeIfAbsent(commandPath, k -> new EnumMap<>(Level.class)).put(level, rate);
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Level level : Level.values()) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(level).append(' ').append(getReported(level)).append('/')
+					.append(getReported(level) + getSampledOut(level));
+		}
+		return sb.append(" reported").toString();
+	}
+}
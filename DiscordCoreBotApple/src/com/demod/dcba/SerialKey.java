@@ -0,0 +1,25 @@
+package com.demod.dcba;
+
+import net.dv8tion.jda.api.entities.Guild;
+
+public enum SerialKey {
+	NONE, CHANNEL, GUILD, USER;
+
+	/**
+	 * Picks the partition key for a task, or -1 if tasks of this kind are not
+	 * ordered. Snowflakes are globally unique, so keys of different kinds never
+	 * collide. Private channels fall back to the channel for {@link #GUILD}.
+	 */
+	public long select(long channelId, Guild guild, long userId) {
+		switch (this) {
+		case CHANNEL:
+			return channelId;
+		case GUILD:
+			return guild != null ? guild.getIdLong() : channelId;
+		case USER:
+			return userId;
+		default:
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.demod.dcba;
+
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The shards a cluster member should be running, out of the cluster's total.
+ */
+public class ShardAssignment {
+	public static ShardAssignment fromJson(JSONObject json) {
+		JSONArray shardIds = json.getJSONArray("shard_ids");
+		ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+		for (int i = 0; i < shardIds.length(); i++) {
+			builder.add(shardIds.getInt(i));
+		}
+		return new ShardAssignment(json.getInt("shards_total"), builder.build());
+	}
+
+	private final int shardsTotal;
+	private final List<Integer> shardIds;
+
+	public ShardAssignment(int shardsTotal, List<Integer> shardIds) {
+		this.shardsTotal = shardsTotal;
+		this.shardIds = ImmutableList.copyOf(shardIds);
+	}
+
+	public List<Integer> getShardIds() {
+		return shardIds;
+	}
+
+	public int getShardsTotal() {
+		return shardsTotal;
+	}
+
+	public JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		json.put("shards_total", shardsTotal);
+		json.put("shard_ids", new JSONArray(shardIds));
+		return json;
+	}
+
+	@Override
+	public String toString() {
+		return shardIds + " of " + shardsTotal;
+	}
+}
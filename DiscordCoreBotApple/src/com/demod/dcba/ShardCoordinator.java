@@ -0,0 +1,23 @@
+package com.demod.dcba;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Hands out shard ranges to the processes of a bot cluster. Members join,
+ * send a heartbeat with their {@link ShardStats} every few seconds and get
+ * back the shards they should be running; members that stop sending
+ * heartbeats have their shards reassigned.
+ *
+ * @see LocalShardCoordinator
+ * @see RemoteShardCoordinator
+ */
+public interface ShardCoordinator {
+	List<ShardStats> getStats() throws IOException;
+
+	ShardAssignment heartbeat(ShardStats stats) throws IOException;
+
+	ShardAssignment join(String memberId) throws IOException;
+
+	void leave(String memberId) throws IOException;
+}
@@ -0,0 +1,109 @@
+package com.demod.dcba;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a {@link LocalShardCoordinator} over HTTP on the loopback interface,
+ * for {@link RemoteShardCoordinator}s in other processes on the same host.
+ */
+public class ShardCoordinatorServer {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardCoordinatorServer.class);
+
+	@FunctionalInterface
+	private interface Handler {
+		Object handle(JSONObject request) throws IOException;
+	}
+
+	/**
+	 * Runs a standalone coordinator: {@code <port> <shardsTotal>}
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: ShardCoordinatorServer <port> <shardsTotal>");
+			System.exit(1);
+		}
+		new ShardCoordinatorServer(new LocalShardCoordinator(Integer.parseInt(args[1])), Integer.parseInt(args[0]))
+				.start();
+	}
+
+	private final LocalShardCoordinator coordinator;
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(
+			new ThreadFactoryBuilder().setNameFormat("dcba-coordinator-%d").build());
+
+	/**
+	 * @param port
+	 *            the port to listen on, 0 for any free port
+	 */
+	public ShardCoordinatorServer(LocalShardCoordinator coordinator, int port) throws IOException {
+		this.coordinator = coordinator;
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(executor);
+		server.createContext("/join", exchange -> handle(exchange,
+				request -> coordinator.join(request.getString("member_id")).toJson()));
+		server.createContext("/heartbeat", exchange -> handle(exchange,
+				request -> coordinator.heartbeat(ShardStats.fromJson(request)).toJson()));
+		server.createContext("/leave", exchange -> handle(exchange, request -> {
+			coordinator.leave(request.getString("member_id"));
+			return new JSONObject();
+		}));
+		server.createContext("/stats", exchange -> handle(exchange, request -> {
+			JSONArray stats = new JSONArray();
+			coordinator.getStats().forEach(s -> stats.put(s.toJson()));
+			return stats;
+		}));
+	}
+
+	public LocalShardCoordinator getCoordinator() {
+		return coordinator;
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange, Handler handler) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			JSONObject request = body.isBlank() ? new JSONObject() : new JSONObject(body);
+			byte[] response = handler.handle(request).toString().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, response.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(response);
+			}
+		} catch (Exception e) {
+			LOGGER.error("Coordinator request " + exchange.getRequestURI() + " failed", e);
+			exchange.sendResponseHeaders(500, -1);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	public void start() {
+		server.start();
+		LOGGER.info("Shard coordinator listening on port " + getPort() + " for " + coordinator.getShardsTotal()
+				+ " shards");
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+}
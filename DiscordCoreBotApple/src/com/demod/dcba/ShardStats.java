@@ -0,0 +1,63 @@
+package com.demod.dcba;
+
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * What a cluster member reports to the coordinator with every heartbeat.
+ */
+public class ShardStats {
+	public static ShardStats fromJson(JSONObject json) {
+		JSONArray shardIds = json.getJSONArray("shard_ids");
+		ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+		for (int i = 0; i < shardIds.length(); i++) {
+			builder.add(shardIds.getInt(i));
+		}
+		return new ShardStats(json.getString("member_id"), builder.build(), json.getLong("guild_count"),
+				json.getLong("ping"));
+	}
+
+	private final String memberId;
+	private final List<Integer> shardIds;
+	private final long guildCount;
+	private final long ping;
+
+	public ShardStats(String memberId, List<Integer> shardIds, long guildCount, long ping) {
+		this.memberId = memberId;
+		this.shardIds = ImmutableList.copyOf(shardIds);
+		this.guildCount = guildCount;
+		this.ping = ping;
+	}
+
+	public long getGuildCount() {
+		return guildCount;
+	}
+
+	public String getMemberId() {
+		return memberId;
+	}
+
+	public long getPing() {
+		return ping;
+	}
+
+	/**
+	 * The shards the member is currently running.
+	 */
+	public List<Integer> getShardIds() {
+		return shardIds;
+	}
+
+	public JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		json.put("member_id", memberId);
+		json.put("shard_ids", new JSONArray(shardIds));
+		json.put("guild_count", guildCount);
+		json.put("ping", ping);
+		return json;
+	}
+}
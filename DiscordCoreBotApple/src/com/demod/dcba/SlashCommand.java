@@ -0,0 +1,27 @@
+package com.demod.dcba;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method as a slash command handler for the DiscordCoreBotAppleProcessor
+ * annotation processor. For a class {@code Foo} with annotated methods, the
+ * processor generates {@code FooDispatcher.definitions(Foo)}, which is passed
+ * to {@link DCBA.Builder#addSlashCommands(java.util.Collection)}.
+ * <p>
+ * A parameter of type {@link SlashCommandEvent} receives the event; every
+ * other parameter becomes an option, see {@link Param}.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface SlashCommand {
+	String description();
+
+	String path();
+
+	CommandRestriction[] restrictions() default {};
+}
@@ -1,10 +1,13 @@
 package com.demod.dcba;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SlashCommandDefinition {
 
@@ -14,6 +17,15 @@ public class SlashCommandDefinition {
 	private final Optional<AutoCompleteHandler> autoCompleteHandler;
 	private final List<SlashCommandOptionDefinition> options = new ArrayList<>();
 	private final EnumSet<CommandRestriction> restrictions = EnumSet.noneOf(CommandRestriction.class);
+	private Optional<String> bulkheadGroup = Optional.empty();
+	private int concurrency;
+	private int queueLimit = Bulkhead.DEFAULT_QUEUE_LIMIT;
+	private Optional<Bulkhead> bulkhead = Optional.empty();
+	private Optional<RateLimiter> rateLimiter = Optional.empty();
+	private Optional<AutoCompleteCache> autoCompleteCache = Optional.empty();
+	private Optional<Duration> timeout = Optional.empty();
+	private final List<Class<? extends Record>> paramTypes = new ArrayList<>();
+	private final Map<Class<?>, ParamBinder<?>> paramBinders = new ConcurrentHashMap<>();
 
 	public SlashCommandDefinition(String path, String description, SlashCommandHandler handler,
 			AutoCompleteHandler autoCompleteHandler, SlashCommandOptionDefinition... options) {
@@ -33,14 +45,38 @@ public class SlashCommandDefinition {
 		options.add(option);
 	}
 
+	public void addParamType(Class<? extends Record> paramType) {
+		paramTypes.add(paramType);
+	}
+
 	public void clearRestriction(CommandRestriction restriction) {
 		restrictions.remove(restriction);
 	}
 
+	public Optional<AutoCompleteCache> getAutoCompleteCache() {
+		return autoCompleteCache;
+	}
+
 	public Optional<AutoCompleteHandler> getAutoCompleteHandler() {
 		return autoCompleteHandler;
 	}
 
+	public Optional<Bulkhead> getBulkhead() {
+		return bulkhead;
+	}
+
+	public Optional<String> getBulkheadGroup() {
+		return bulkheadGroup;
+	}
+
+	public String getBulkheadName() {
+		return bulkheadGroup.orElse(path);
+	}
+
+	public int getConcurrency() {
+		return concurrency;
+	}
+
 	public String getDescription() {
 		return description;
 	}
@@ -53,19 +89,68 @@ public class SlashCommandDefinition {
 		return options;
 	}
 
+	@SuppressWarnings("unchecked")
+	<R extends Record> ParamBinder<R> getParamBinder(Class<R> type) {
+		return (ParamBinder<R>) paramBinders.computeIfAbsent(type, t -> new ParamBinder<>(type, options));
+	}
+
+	public List<Class<? extends Record>> getParamTypes() {
+		return paramTypes;
+	}
+
 	public String getPath() {
 		return path;
 	}
 
+	public int getQueueLimit() {
+		return queueLimit;
+	}
+
+	public Optional<RateLimiter> getRateLimiter() {
+		return rateLimiter;
+	}
+
 	public EnumSet<CommandRestriction> getRestrictions() {
 		return restrictions;
 	}
 
+	public Optional<Duration> getTimeout() {
+		return timeout;
+	}
+
 	public boolean hasRestriction(CommandRestriction restriction) {
 		return restrictions.contains(restriction);
 	}
 
+	public void setAutoCompleteCache(Optional<AutoCompleteCache> autoCompleteCache) {
+		this.autoCompleteCache = autoCompleteCache;
+	}
+
+	void setBulkhead(Optional<Bulkhead> bulkhead) {
+		this.bulkhead = bulkhead;
+	}
+
+	public void setBulkheadGroup(Optional<String> bulkheadGroup) {
+		this.bulkheadGroup = bulkheadGroup;
+	}
+
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
+	public void setQueueLimit(int queueLimit) {
+		this.queueLimit = queueLimit;
+	}
+
+	public void setRateLimiter(Optional<RateLimiter> rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
 	public void setRestriction(CommandRestriction restriction) {
 		restrictions.add(restriction);
 	}
+
+	public void setTimeout(Optional<Duration> timeout) {
+		this.timeout = timeout;
+	}
 }
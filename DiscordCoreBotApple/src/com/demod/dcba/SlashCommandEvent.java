@@ -2,6 +2,8 @@ package com.demod.dcba;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
 
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
@@ -23,16 +25,25 @@ import net.dv8tion.jda.api.utils.FileUpload;
 public class SlashCommandEvent extends AbstractParamPayloadEvent implements EventReply {
 
 	private final SlashCommandInteractionEvent event;
+	private final Optional<SlashCommandDefinition> definition;
 	private final CommandReporting reporting;
 	private final InteractionHook hook;
 	private final Interaction interaction;
 	private final boolean ephemeral;
 
 	private boolean replied;
+	private boolean finished;
+	private Record params;
 
 	public SlashCommandEvent(SlashCommandInteractionEvent event, CommandReporting reporting, InteractionHook hook,
 			boolean ephemeral) {
+		this(event, Optional.empty(), reporting, hook, ephemeral);
+	}
+
+	public SlashCommandEvent(SlashCommandInteractionEvent event, Optional<SlashCommandDefinition> definition,
+			CommandReporting reporting, InteractionHook hook, boolean ephemeral) {
 		super(event);
+		this.definition = definition;
 		this.event = event;
 		this.reporting = reporting;
 		this.hook = hook;
@@ -40,6 +51,30 @@ public class SlashCommandEvent extends AbstractParamPayloadEvent implements Even
 		this.interaction = hook.getInteraction();
 	}
 
+	/**
+	 * Binds this command's options into the given record, see
+	 * {@link DCBA.SlashCommandBuilder#withParams(Class)}. The options are only
+	 * bound once, later calls return the same record.
+	 */
+	public <R extends Record> R bindParams(Class<R> type) {
+		if (type.isInstance(params)) {
+			return type.cast(params);
+		}
+		R bound = definition
+				.orElseThrow(() -> new IllegalStateException("This event was created without its command definition!"))
+				.getParamBinder(type).bind(event);
+		params = bound;
+		return bound;
+	}
+
+	/**
+	 * Stops any further replies through the hook, the command has been answered
+	 * or has timed out.
+	 */
+	synchronized void finish() {
+		finished = true;
+	}
+
 	public Attachment getAttachment(String name) {
 		return event.getOption(name).getAsAttachment();
 	}
@@ -56,6 +91,10 @@ public class SlashCommandEvent extends AbstractParamPayloadEvent implements Even
 		return event.getGuild();
 	}
 
+	InteractionHook getHook() {
+		return hook;
+	}
+
 	public JDA getJDA() {
 		return interaction.getJDA();
 	}
@@ -86,17 +125,29 @@ public class SlashCommandEvent extends AbstractParamPayloadEvent implements Even
 		return interaction.getUser();
 	}
 
-	public boolean hasReplied() {
+	public synchronized boolean hasReplied() {
 		return replied;
 	}
 
+	public boolean isEphemeral() {
+		return ephemeral;
+	}
+
+	public synchronized boolean isFinished() {
+		return finished;
+	}
+
 	public boolean isFromType(ChannelType type) {
 		return interaction.getChannel().getType() == type;
 	}
 
+	public TaskScope openScope() {
+		return reporting.openScope();
+	}
+
 	@Override
 	public Message replyEmbed(List<MessageEmbed> embeds, List<List<ItemComponent>> actionRows) {
-		replied = true;
+		startReply();
 		WebhookMessageCreateAction<Message> action = hook.sendMessageEmbeds(embeds);
 		for (List<ItemComponent> actionRow : actionRows) {
 			if (!actionRow.isEmpty()) {
@@ -110,7 +161,7 @@ public class SlashCommandEvent extends AbstractParamPayloadEvent implements Even
 
 	@Override
 	public Message replyFile(InputStream data, String filename, List<List<ItemComponent>> actionRows) {
-		replied = true;
+		startReply();
 		WebhookMessageCreateAction<Message> action = hook.sendFiles(FileUpload.fromData(data, filename));
 		for (List<ItemComponent> actionRow : actionRows) {
 			if (!actionRow.isEmpty()) {
@@ -138,4 +189,11 @@ public class SlashCommandEvent extends AbstractParamPayloadEvent implements Even
 		return ret;
 	}
 
+	private synchronized void startReply() {
+		if (finished) {
+			throw new CancellationException("The command has already finished, the reply was dropped");
+		}
+		replied = true;
+	}
+
 }
@@ -0,0 +1,153 @@
+package com.demod.dcba;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Forks subtasks from inside a handler and waits for them together. Subtasks
+ * share the interaction's deadline, are cancelled when the handler is
+ * cancelled or times out, and report their exceptions into the handler's
+ * {@link CommandReporting} with the given blame.
+ *
+ * <pre>
+ * try (TaskScope scope = event.openScope()) {
+ * 	Future&lt;byte[]&gt; a = scope.fork("Download A", () -&gt; download(a));
+ * 	Future&lt;byte[]&gt; b = scope.fork("Download B", () -&gt; download(b));
+ * 	scope.join();
+ * 	...
+ * }
+ * </pre>
+ *
+ * Button, string select and message context handlers open it with
+ * {@link CommandReporting#openScope()} instead.
+ */
+public class TaskScope implements AutoCloseable {
+
+	/**
+	 * Opens a scope for the handler running on the current thread.
+	 *
+	 * @throws IllegalStateException if called outside of a DCBA handler
+	 */
+	public static TaskScope open() {
+		return new TaskScope(InteractionContext.current().orElseThrow(
+				() -> new IllegalStateException("TaskScope can only be opened from inside a handler!")));
+	}
+
+	/**
+	 * Opens a scope for the handler the reporting belongs to.
+	 *
+	 * @throws IllegalStateException if called outside of that handler
+	 */
+	static TaskScope open(CommandReporting reporting) {
+		TaskScope scope = open();
+		if (scope.context.getReporting() != reporting) {
+			throw new IllegalStateException("TaskScope can only be opened from inside the handler it reports for!");
+		}
+		return scope;
+	}
+
+	private final InteractionContext context;
+	private final List<DeadlineScheduler.Task<?>> subtasks = new ArrayList<>();
+	private boolean closed;
+
+	private TaskScope(InteractionContext context) {
+		this.context = context;
+		context.getTask().ifPresent(task -> task.whenComplete((r, t) -> {
+			if (t != null) {
+				cancel();
+			}
+		}));
+	}
+
+	public synchronized void cancel() {
+		for (DeadlineScheduler.Task<?> subtask : subtasks) {
+			subtask.cancel(true);
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		cancel();
+	}
+
+	public <T> Future<T> fork(Callable<T> callable) {
+		return fork(null, callable);
+	}
+
+	/**
+	 * Runs the subtask on the subtask scheduler. If the handler was already
+	 * cancelled or timed out, the returned future is cancelled right away.
+	 *
+	 * @throws IllegalStateException
+	 *             if the scope is closed or the handler has already returned
+	 */
+	public <T> Future<T> fork(String blame, Callable<T> callable) {
+		DeadlineScheduler scheduler = context.getSubtaskScheduler();
+		DeadlineScheduler.Task<T> subtask = scheduler.submit(context.getType(), context.getDeadline(),
+				() -> InteractionContext.call(context.withTask(DeadlineScheduler.currentTask().get()), callable));
+		synchronized (this) {
+			if (closed) {
+				subtask.cancel(true);
+				throw new IllegalStateException("TaskScope is closed!");
+			}
+			subtasks.add(subtask);
+		}
+		// The parent may have completed before the subtask was added, so the
+		// cancellation registered on it would have missed this subtask
+		Optional<CompletableFuture<?>> parent = context.getTask();
+		if (parent.isPresent() && parent.get().isDone()) {
+			subtask.cancel(true);
+			if (!parent.get().isCompletedExceptionally()) {
+				throw new IllegalStateException("The handler of this TaskScope has already returned!");
+			}
+		}
+		subtask.whenComplete((r, t) -> {
+			if (t == null) {
+				return;
+			}
+			Throwable cause = Throwables.getRootCause(t);
+			if (cause instanceof CancellationException) {
+				return;
+			}
+			context.getReporting().addException(
+					cause instanceof Exception ? (Exception) cause : new ExecutionException(cause), blame);
+		});
+		return subtask;
+	}
+
+	/**
+	 * Waits for every subtask forked so far. Failed subtasks have already been
+	 * reported, so their exceptions are not rethrown here; check the returned
+	 * futures or the reporting if the handler needs to react to them. If the
+	 * waiting thread is interrupted the remaining subtasks are cancelled.
+	 */
+	public void join() throws InterruptedException {
+		List<DeadlineScheduler.Task<?>> snapshot;
+		synchronized (this) {
+			snapshot = new ArrayList<>(subtasks);
+		}
+		try {
+			for (DeadlineScheduler.Task<?> subtask : snapshot) {
+				try {
+					subtask.get();
+				} catch (ExecutionException | CancellationException e) {
+					// Reported when the subtask completed
+				}
+			}
+		} catch (InterruptedException e) {
+			cancel();
+			throw e;
+		}
+	}
+}
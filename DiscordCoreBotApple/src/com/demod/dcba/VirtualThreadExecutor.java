@@ -0,0 +1,123 @@
+package com.demod.dcba;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Starts one named virtual thread per task. Concurrency is capped by a
+ * semaphore rather than a thread count, so tasks blocked on REST calls do not
+ * hold up a carrier thread while they wait.
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+
+	private final ThreadFactory threadFactory;
+	private final int maxConcurrency;
+	private final Semaphore permits;
+	private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean shutdown;
+
+	public VirtualThreadExecutor(String namePrefix, int maxConcurrency) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be at least 1");
+		}
+		this.threadFactory = Thread.ofVirtual().name(namePrefix, 0).factory();
+		this.maxConcurrency = maxConcurrency;
+		this.permits = new Semaphore(maxConcurrency, true);
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Thread thread : threads) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				break;
+			}
+			thread.join(Duration.ofNanos(remaining));
+		}
+		return isTerminated();
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (shutdown) {
+			throw new RejectedExecutionException("Executor has been shut down");
+		}
+		Thread thread = threadFactory.newThread(() -> run(command));
+		threads.add(thread);
+		if (shutdown) {
+			threads.remove(thread);
+			throw new RejectedExecutionException("Executor has been shut down");
+		}
+		thread.start();
+	}
+
+	public int getActiveCount() {
+		return maxConcurrency - permits.availablePermits();
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	public int getQueuedCount() {
+		return permits.getQueueLength();
+	}
+
+	public Set<Thread> getThreads() {
+		return ImmutableSet.copyOf(threads);
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return shutdown && threads.isEmpty();
+	}
+
+	private void run(Runnable command) {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			threads.remove(Thread.currentThread());
+			return;
+		}
+		try {
+			command.run();
+		} finally {
+			permits.release();
+			threads.remove(Thread.currentThread());
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		shutdown = true;
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		shutdown = true;
+		threads.forEach(Thread::interrupt);
+		return ImmutableList.of();
+	}
+
+	@Override
+	public String toString() {
+		return getActiveCount() + "/" + maxConcurrency + " active, " + getQueuedCount() + " waiting";
+	}
+}
@@ -0,0 +1,59 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+public class BulkheadTest {
+	@Test
+	public void failedStartReleasesTheSlot() {
+		Bulkhead bulkhead = new Bulkhead("test", 1, 0);
+		assertTrue(bulkhead.offer(() -> {
+			throw new IllegalStateException();
+		}));
+		assertEquals(0, bulkhead.getRunning());
+		assertTrue(bulkhead.offer(CompletableFuture::new));
+	}
+
+	@Test
+	public void queuedTasksStartInOrderAsSlotsFree() {
+		Bulkhead bulkhead = new Bulkhead("test", 2, 2);
+		List<CompletableFuture<Void>> stages = new ArrayList<>();
+		List<Integer> started = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			int task = i;
+			assertTrue(bulkhead.offer(() -> {
+				started.add(task);
+				CompletableFuture<Void> stage = new CompletableFuture<>();
+				stages.add(stage);
+				return stage;
+			}));
+		}
+		assertEquals(List.of(0, 1), started);
+		assertEquals(2, bulkhead.getRunning());
+		assertEquals(2, bulkhead.getQueued());
+
+		// Full queue
+		assertFalse(bulkhead.offer(CompletableFuture::new));
+		assertEquals(1, bulkhead.getRejected());
+
+		stages.get(1).complete(null);
+		assertEquals(List.of(0, 1, 2), started);
+		stages.get(0).complete(null);
+		assertEquals(List.of(0, 1, 2, 3), started);
+		assertEquals(2, bulkhead.getRunning());
+		assertEquals(0, bulkhead.getQueued());
+
+		stages.get(2).complete(null);
+		stages.get(3).complete(null);
+		assertEquals(0, bulkhead.getRunning());
+		assertEquals(4, bulkhead.getCompleted());
+		assertEquals(2, bulkhead.getPeakRunning());
+	}
+}
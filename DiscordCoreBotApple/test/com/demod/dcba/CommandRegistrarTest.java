@@ -0,0 +1,111 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.requests.restaction.CommandListUpdateAction;
+
+public class CommandRegistrarTest {
+	// Completes right away, with the result or the failure
+	@SuppressWarnings("unchecked")
+	private static <T> T action(Class<T> type, Object result, Throwable failure) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "addCommands":
+						return proxy;
+					case "queue":
+						if (failure != null) {
+							((Consumer<Throwable>) args[1]).accept(failure);
+						} else {
+							((Consumer<Object>) args[0]).accept(result);
+						}
+						return null;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				}));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Supplier<RestAction<List<Command>>> retrieve(Throwable failure) {
+		return () -> action(RestAction.class, List.of(), failure);
+	}
+
+	private final CommandData ping = Commands.slash("ping", "Pong!");
+	private final List<List<Command>> registered = new ArrayList<>();
+	private int updates;
+
+	private File createStateFile() throws IOException {
+		File ret = File.createTempFile("commands", ".json");
+		ret.delete();
+		ret.deleteOnExit();
+		return ret;
+	}
+
+	private CommandListUpdateAction update() {
+		updates++;
+		return action(CommandListUpdateAction.class, List.of(), null);
+	}
+
+	@Test
+	public void failedRetrieveRegistersAnyway() throws IOException {
+		CommandRegistrar registrar = new CommandRegistrar(createStateFile(), 1);
+		registrar.register("global", List.of(ping), this::update, retrieve(new IOException()), registered::add);
+		assertEquals(1, updates);
+		assertEquals(1, registered.size());
+	}
+
+	@Test
+	public void hashChangesWithTheCommand() {
+		assertEquals(CommandRegistrar.hash(ping), CommandRegistrar.hash(Commands.slash("ping", "Pong!")));
+		assertNotEquals(CommandRegistrar.hash(ping), CommandRegistrar.hash(Commands.slash("ping", "Pong?")));
+		assertNotEquals(CommandRegistrar.hash(ping), CommandRegistrar.hash(Commands.slash("pong", "Pong!")));
+	}
+
+	@Test
+	public void registersOnlyWhenDiscordDiffers() throws IOException {
+		CommandRegistrar registrar = new CommandRegistrar(createStateFile(), 1);
+		registrar.register("global", List.of(ping), this::update, retrieve(null), registered::add);
+		assertEquals(1, updates);
+
+		// Discord lost the commands, the saved state alone must not skip them
+		registrar.register("global", List.of(ping), this::update, retrieve(null), registered::add);
+		assertEquals(2, updates);
+
+		registrar.register("global", List.of(), this::update, retrieve(null), registered::add);
+		assertEquals(2, updates);
+		assertEquals(3, registered.size());
+	}
+
+	@Test
+	public void stateIsKeptPerApplicationAndScope() throws IOException {
+		File stateFile = createStateFile();
+		new CommandRegistrar(stateFile, 1).register("global", List.of(ping), this::update, retrieve(null),
+				registered::add);
+		new CommandRegistrar(stateFile, 2).register("guild 3", List.of(ping), this::update, retrieve(null),
+				registered::add);
+
+		JSONObject state = new JSONObject(Files.readString(stateFile.toPath()));
+		assertEquals(CommandRegistrar.hash(ping),
+				state.getJSONObject("1").getJSONObject("global").getString("SLASH/ping"));
+		assertEquals(CommandRegistrar.hash(ping),
+				state.getJSONObject("2").getJSONObject("guild 3").getString("SLASH/ping"));
+	}
+}
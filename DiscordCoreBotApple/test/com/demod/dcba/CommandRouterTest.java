@@ -0,0 +1,87 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import net.dv8tion.jda.api.interactions.commands.Command;
+import net.dv8tion.jda.api.interactions.commands.CommandInteractionPayload;
+
+public class CommandRouterTest {
+	private static SlashCommandDefinition command(String path) {
+		return new SlashCommandDefinition(path, path, event -> {
+		});
+	}
+
+	private static Command registered(String name, Command.Type type, long id) {
+		return stub(Command.class, Map.of("getName", name, "getType", type, "getIdLong", id));
+	}
+
+	private static CommandInteractionPayload interaction(long id, String name, String group, String subcommand) {
+		Map<String, Object> values = new HashMap<>();
+		values.put("getCommandIdLong", id);
+		values.put("getName", name);
+		values.put("getSubcommandGroup", group);
+		values.put("getSubcommandName", subcommand);
+		return stub(CommandInteractionPayload.class, values);
+	}
+
+	// Only the getters the router calls are answered
+	private static <T> T stub(Class<T> type, Map<String, Object> values) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> values.get(method.getName())));
+	}
+
+	private final SlashCommandDefinition ping = command("ping");
+	private final SlashCommandDefinition userInfo = command("user/info");
+	private final SlashCommandDefinition roleAdd = command("admin/role/add");
+	private final CommandRouter router = new CommandRouter(List.of(ping, userInfo, roleAdd));
+
+	@Test
+	public void bindRoutesByIdOnly() {
+		CommandRouter bound = router.bind(List.of(registered("ping", Command.Type.SLASH, 10),
+				registered("user", Command.Type.USER, 20), registered("unknown", Command.Type.SLASH, 30)));
+		assertEquals(1, bound.getBoundCount());
+		assertEquals(0, router.getBoundCount());
+		// A renamed command is still found by its ID
+		assertSame(ping, bound.route(interaction(10, "pong", null, null)));
+		assertNull(router.route(interaction(10, "pong", null, null)));
+	}
+
+	@Test
+	public void nestedCommandsAreRejected() {
+		assertThrows(IllegalStateException.class,
+				() -> new CommandRouter(List.of(command("user"), command("user/info"))));
+		assertThrows(IllegalStateException.class,
+				() -> new CommandRouter(List.of(command("user/info"), command("user/info"))));
+	}
+
+	@Test
+	public void routesByNameAndSubcommands() {
+		assertSame(ping, router.route(interaction(1, "ping", null, null)));
+		assertSame(userInfo, router.route(interaction(2, "user", null, "info")));
+		assertSame(roleAdd, router.route(interaction(3, "admin", "role", "add")));
+		assertNull(router.route(interaction(4, "admin", "role", "remove")));
+		assertNull(router.route(interaction(5, "admin", null, "add")));
+		assertNull(router.route(interaction(6, "stale", null, null)));
+	}
+
+	@Test
+	public void withBindingsKeepsPresentCommands() {
+		CommandRouter bound = router.bind(List.of(registered("ping", Command.Type.SLASH, 10),
+				registered("user", Command.Type.SLASH, 20)));
+		SlashCommandDefinition newPing = command("ping");
+		CommandRouter reloaded = new CommandRouter(List.of(newPing, roleAdd)).withBindings(bound);
+		assertEquals(1, reloaded.getBoundCount());
+		assertSame(newPing, reloaded.route(interaction(10, "ping", null, null)));
+		assertNull(reloaded.route(interaction(20, "user", null, "info")));
+	}
+}
@@ -0,0 +1,128 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+public class DeadlineSchedulerTest {
+	private static Throwable cause(CompletableFuture<?> future) {
+		try {
+			future.join();
+			throw new AssertionError("Expected the task to fail");
+		} catch (CompletionException e) {
+			return e.getCause();
+		} catch (CancellationException e) {
+			return e;
+		}
+	}
+
+	// Tasks only run when the test says so
+	private final Deque<Runnable> pending = new ArrayDeque<>();
+	private final DeadlineScheduler scheduler = new DeadlineScheduler(pending::add, 1);
+
+	private Instant in(Duration duration) {
+		return Instant.now().plus(duration);
+	}
+
+	@Test
+	public void earliestDeadlineRunsFirst() {
+		List<String> order = new ArrayList<>();
+		scheduler.submit(InteractionType.SLASH_COMMAND, in(Duration.ofHours(3)), () -> {
+			order.add("first");
+		});
+		scheduler.submit(InteractionType.SLASH_COMMAND, in(Duration.ofHours(2)), () -> {
+			order.add("late");
+		});
+		scheduler.submit(InteractionType.BUTTON, in(Duration.ofHours(1)), () -> {
+			order.add("early");
+		});
+		assertEquals(2, scheduler.getQueued());
+
+		while (!pending.isEmpty()) {
+			pending.poll().run();
+		}
+		assertEquals(List.of("first", "early", "late"), order);
+		assertEquals(0, scheduler.getRunning());
+	}
+
+	@Test
+	public void expiredTaskIsDropped() {
+		boolean[] ran = new boolean[1];
+		DeadlineScheduler.Task<Void> task = scheduler.submit(InteractionType.BUTTON,
+				Instant.now().minusSeconds(1), () -> {
+					ran[0] = true;
+				});
+		assertTrue(cause(task) instanceof CancellationException);
+		assertFalse(ran[0]);
+		assertEquals(1, scheduler.getExpired(InteractionType.BUTTON));
+		assertTrue(pending.isEmpty());
+	}
+
+	@Test
+	public void shutdownRejectsQueuedTasks() {
+		DeadlineScheduler.Task<Void> running = scheduler.submit(InteractionType.SLASH_COMMAND,
+				in(Duration.ofHours(1)), () -> {
+				});
+		DeadlineScheduler.Task<Void> queued = scheduler.submit(InteractionType.SLASH_COMMAND,
+				in(Duration.ofHours(1)), () -> {
+				});
+
+		assertEquals(List.of(queued), scheduler.shutdown());
+		assertTrue(cause(queued) instanceof RejectedExecutionException);
+		DeadlineScheduler.Task<Void> late = scheduler.submit(InteractionType.SLASH_COMMAND,
+				in(Duration.ofHours(1)), () -> {
+				});
+		assertTrue(cause(late) instanceof RejectedExecutionException);
+
+		// Already handed to the executor, so it is left to finish
+		pending.poll().run();
+		assertTrue(running.isDone() && !running.isCompletedExceptionally());
+	}
+
+	@Test
+	public void timeoutInterruptsAndWaitsForTheThreadToExit() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		DeadlineScheduler scheduler = new DeadlineScheduler(executor, 1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		CountDownLatch exit = new CountDownLatch(1);
+		DeadlineScheduler.Task<Void> task = scheduler.submit(InteractionType.SLASH_COMMAND,
+				in(Duration.ofHours(1)), Optional.of(Duration.ofMillis(50)), () -> {
+					try {
+						new CountDownLatch(1).await();
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+					}
+					// Ignores the interrupt for a while
+					exit.await(10, TimeUnit.SECONDS);
+					return null;
+				});
+
+		assertTrue(cause(task) instanceof TimeoutException);
+		assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+		assertFalse(task.whenExited().isDone());
+		assertEquals(1, scheduler.getTimedOut(InteractionType.SLASH_COMMAND));
+
+		exit.countDown();
+		task.whenExited().get(10, TimeUnit.SECONDS);
+		executor.shutdown();
+	}
+}
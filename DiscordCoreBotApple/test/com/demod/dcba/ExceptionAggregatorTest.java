@@ -0,0 +1,73 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+public class ExceptionAggregatorTest {
+	private static CommandReporting report(String author, Exception e, String blame) {
+		CommandReporting ret = new CommandReporting(author, null, Instant.now());
+		ret.setCommandPath("ping");
+		ret.addException(e, blame);
+		return ret;
+	}
+
+	// Long enough that poll never summarizes while a test runs
+	private final ExceptionAggregator aggregator = new ExceptionAggregator(Duration.ofHours(1));
+
+	@Test
+	public void blameSeparatesFingerprints() {
+		Exception e = new IllegalStateException();
+		assertTrue(aggregator.admit(report("a", e, "Download")));
+		assertTrue(aggregator.admit(report("a", e, "Upload")));
+		assertFalse(aggregator.admit(report("a", e, "Upload")));
+	}
+
+	@Test
+	public void newExceptionLetsTheReportThrough() {
+		Exception known = new IllegalStateException();
+		assertTrue(aggregator.admit(report("a", known, null)));
+		CommandReporting mixed = report("a", known, null);
+		mixed.addException(new IOException());
+		assertTrue(aggregator.admit(mixed));
+		assertTrue(aggregator.admit(new CommandReporting("a", null, Instant.now())));
+		assertTrue(aggregator.flush().isEmpty());
+	}
+
+	@Test
+	public void repeatsAreHeldBackAndSummarized() {
+		// Thrown from the same place with different messages
+		List<Exception> failures = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			failures.add(new IllegalStateException("Unknown ID " + i));
+		}
+		List<Boolean> admitted = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			admitted.add(aggregator.admit(report("user" + i, failures.get(i), null)));
+		}
+		assertEquals(List.of(true, false, false), admitted);
+		assertTrue(aggregator.poll().isEmpty());
+
+		List<MessageEmbed> summaries = aggregator.flush();
+		assertEquals(1, summaries.size());
+		MessageEmbed summary = summaries.get(0);
+		assertTrue(summary.getTitle().startsWith("Repeated 2 times"));
+		assertTrue(summary.getDescription().contains("IllegalStateException: Unknown ID 0"));
+		assertEquals("/ping", summary.getFields().get(0).getValue());
+		assertEquals("user1\nuser2", summary.getFields().get(1).getValue());
+
+		// Counted again from zero, but still known
+		assertTrue(aggregator.flush().isEmpty());
+		assertFalse(aggregator.admit(report("user3", failures.get(3), null)));
+	}
+}
@@ -0,0 +1,100 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+public class KeyedSerialExecutorTest {
+	private final KeyedSerialExecutor executor = new KeyedSerialExecutor();
+
+	@Test
+	public void differentKeysRunConcurrently() {
+		CompletableFuture<Void> first = new CompletableFuture<>();
+		List<Long> started = new ArrayList<>();
+		executor.submit(1, () -> {
+			started.add(1L);
+			return first;
+		});
+		executor.submit(2, () -> {
+			started.add(2L);
+			return new CompletableFuture<Void>();
+		});
+		assertEquals(List.of(1L, 2L), started);
+		assertEquals(2, executor.getActiveKeys());
+	}
+
+	@Test
+	public void longQueueDoesNotRecurse() {
+		CompletableFuture<Void> first = new CompletableFuture<>();
+		executor.submit(1, () -> first);
+		int[] count = new int[1];
+		CompletableFuture<Void> last = null;
+		for (int i = 0; i < 100_000; i++) {
+			last = executor.submit(1, () -> {
+				count[0]++;
+				return CompletableFuture.completedFuture(null);
+			});
+		}
+		first.complete(null);
+		assertTrue(last.isDone());
+		assertEquals(100_000, count[0]);
+		assertEquals(0, executor.getActiveKeys());
+	}
+
+	@Test
+	public void reservationKeepsItsPlaceInLine() {
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		CompletableFuture<Void> turn = executor.reserve(1, done);
+		assertTrue(turn.isDone());
+
+		List<String> order = new ArrayList<>();
+		CompletableFuture<Void> laterDone = new CompletableFuture<>();
+		CompletableFuture<Void> laterTurn = executor.reserve(1, laterDone);
+		laterTurn.thenRun(() -> order.add("reserved"));
+		executor.submit(1, () -> {
+			order.add("submitted");
+			return CompletableFuture.completedFuture(null);
+		});
+		assertFalse(laterTurn.isDone());
+
+		done.complete(null);
+		assertEquals(List.of("reserved"), order);
+		laterDone.complete(null);
+		assertEquals(List.of("reserved", "submitted"), order);
+	}
+
+	@Test
+	public void sameKeyRunsInOrder() {
+		List<Integer> order = new ArrayList<>();
+		CompletableFuture<Void> first = new CompletableFuture<>();
+		executor.submit(1, () -> {
+			order.add(1);
+			return first;
+		});
+		executor.submit(1, () -> {
+			order.add(2);
+			return CompletableFuture.completedFuture(null);
+		});
+		CompletableFuture<Object> failing = executor.submit(1, () -> {
+			order.add(3);
+			throw new IllegalStateException();
+		});
+		executor.submit(1, () -> {
+			order.add(4);
+			return CompletableFuture.completedFuture(null);
+		});
+		assertEquals(List.of(1), order);
+		assertEquals(3, executor.getQueued());
+
+		first.complete(null);
+		assertEquals(List.of(1, 2, 3, 4), order);
+		assertTrue(failing.isCompletedExceptionally());
+		assertEquals(0, executor.getActiveKeys());
+	}
+}
@@ -0,0 +1,141 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class LocalShardCoordinatorTest {
+	private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+	private final AtomicLong now = new AtomicLong();
+	private final LocalShardCoordinator coordinator = new LocalShardCoordinator(4, TIMEOUT, now::get);
+
+	// What each member is connected as, like DiscordBot after applying an assignment
+	private final Map<String, List<Integer>> running = new HashMap<>();
+
+	private void assertNoShardRunsTwice() {
+		Map<Integer, String> owners = new HashMap<>();
+		running.forEach((memberId, shardIds) -> {
+			for (int shardId : shardIds) {
+				String other = owners.put(shardId, memberId);
+				assertTrue(other == null, "Shard " + shardId + " runs in " + other + " and " + memberId);
+			}
+		});
+	}
+
+	private List<Integer> heartbeat(String memberId) {
+		ShardStats stats = new ShardStats(memberId, running.getOrDefault(memberId, ImmutableList.of()), 0, 0);
+		List<Integer> shardIds = coordinator.heartbeat(stats).getShardIds();
+		running.put(memberId, shardIds);
+		assertNoShardRunsTwice();
+		return shardIds;
+	}
+
+	private List<Integer> join(String memberId) {
+		List<Integer> shardIds = coordinator.join(memberId).getShardIds();
+		running.put(memberId, shardIds);
+		assertNoShardRunsTwice();
+		return shardIds;
+	}
+
+	@Test
+	public void assignedShardsAreHeldBeforeTheyAreReported() {
+		assertEquals(List.of(0, 1, 2, 3), join("a"));
+		// a has not heartbeated yet, but may already be connecting as 2 and 3
+		assertEquals(List.of(), join("b"));
+		assertEquals(List.of(), heartbeat("b"));
+	}
+
+	@Test
+	public void failoverAfterTimeout() {
+		join("a");
+		join("b");
+		heartbeat("a");
+		heartbeat("a");
+		assertEquals(List.of(2, 3), heartbeat("b"));
+
+		// a goes silent, b keeps heartbeating
+		now.addAndGet(TIMEOUT.toNanos());
+		assertEquals(List.of(2, 3), heartbeat("b"));
+		assertEquals(List.of("a", "b"), coordinator.getMembers());
+
+		now.addAndGet(1);
+		running.remove("a");
+		assertEquals(List.of(0, 1, 2, 3), heartbeat("b"));
+		assertEquals(List.of("b"), coordinator.getMembers());
+	}
+
+	@Test
+	public void leaveReleasesShardsImmediately() {
+		join("a");
+		join("b");
+		heartbeat("a");
+		heartbeat("a");
+		heartbeat("b");
+
+		coordinator.leave("b");
+		running.remove("b");
+		assertEquals(List.of(0, 1, 2, 3), heartbeat("a"));
+	}
+
+	@Test
+	public void reassignmentWaitsForTheOldOwnerToStop() {
+		assertEquals(List.of(0, 1, 2, 3), join("a"));
+		assertEquals(List.of(0, 1, 2, 3), heartbeat("a"));
+
+		assertEquals(List.of(), join("b"));
+		// a is told to give up 2 and 3, but still reports running them
+		assertEquals(List.of(0, 1), heartbeat("a"));
+		assertEquals(List.of(), heartbeat("b"));
+
+		// a reports it stopped them, only now b may start them
+		assertEquals(List.of(0, 1), heartbeat("a"));
+		assertEquals(List.of(2, 3), heartbeat("b"));
+	}
+
+	@Test
+	public void rejoinAfterTimeoutWaitsForTheNewOwner() {
+		join("a");
+		join("b");
+		heartbeat("a");
+		heartbeat("a");
+		heartbeat("b");
+
+		// a is partitioned away long enough to be expired, b takes over
+		now.addAndGet(TIMEOUT.toNanos() + 1);
+		running.remove("a");
+		assertEquals(List.of(0, 1, 2, 3), heartbeat("b"));
+
+		// a comes back as the last member and has to wait for b to hand over
+		assertEquals(List.of(), heartbeat("a"));
+		assertEquals(List.of(0, 1), heartbeat("b"));
+		assertEquals(List.of(), heartbeat("a"));
+		assertEquals(List.of(0, 1), heartbeat("b"));
+		assertEquals(List.of(2, 3), heartbeat("a"));
+	}
+
+	@Test
+	public void threeMembersConvergeWithoutOverlap() {
+		join("a");
+		heartbeat("a");
+		join("b");
+		join("c");
+		for (int round = 0; round < 3; round++) {
+			heartbeat("c");
+			heartbeat("b");
+			heartbeat("a");
+		}
+		assertEquals(List.of(0), running.get("a"));
+		assertEquals(List.of(1), running.get("b"));
+		assertEquals(List.of(2, 3), running.get("c"));
+	}
+}
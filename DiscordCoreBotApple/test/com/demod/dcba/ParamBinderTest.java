@@ -0,0 +1,85 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+
+import org.junit.jupiter.api.Test;
+
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.interactions.commands.CommandInteractionPayload;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+
+public class ParamBinderTest {
+	private record BoxedCount(Optional<Long> count, Optional<String> text) {
+	}
+
+	private record OptionalParams(OptionalLong count, Optional<String> text) {
+	}
+
+	private record OtherParams(OptionalDouble ratio, Optional<User> user, Optional<Role> role) {
+	}
+
+	private record Params(long count, String text) {
+	}
+
+	private record RequiredCount(long count, Optional<String> text) {
+	}
+
+	private record WrongType(boolean count, String text) {
+	}
+
+	private static SlashCommandOptionDefinition option(OptionType type, String name, boolean required) {
+		return new SlashCommandOptionDefinition(type, name, name, required, false);
+	}
+
+	// An interaction without any options
+	private static CommandInteractionPayload emptyInteraction() {
+		return (CommandInteractionPayload) Proxy.newProxyInstance(CommandInteractionPayload.class.getClassLoader(),
+				new Class<?>[] { CommandInteractionPayload.class },
+				(proxy, method, args) -> method.getName().equals("getOptions") ? List.of() : null);
+	}
+
+	private final List<SlashCommandOptionDefinition> required = List.of(option(OptionType.INTEGER, "count", true),
+			option(OptionType.STRING, "text", true));
+	private final List<SlashCommandOptionDefinition> optional = List.of(option(OptionType.INTEGER, "count", false),
+			option(OptionType.STRING, "text", false));
+
+	@Test
+	public void absentOptionalOptionsBindEmpty() {
+		assertEquals(new OptionalParams(OptionalLong.empty(), Optional.empty()),
+				new ParamBinder<>(OptionalParams.class, optional).bind(emptyInteraction()));
+		List<SlashCommandOptionDefinition> other = List.of(option(OptionType.NUMBER, "ratio", false),
+				option(OptionType.MENTIONABLE, "user", false), option(OptionType.ROLE, "role", false));
+		assertEquals(new OtherParams(OptionalDouble.empty(), Optional.empty(), Optional.empty()),
+				new ParamBinder<>(OtherParams.class, other).bind(emptyInteraction()));
+	}
+
+	@Test
+	public void missingRequiredOptionFailsToBind() {
+		ParamBinder<Params> binder = new ParamBinder<>(Params.class, required);
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> binder.bind(emptyInteraction()));
+		assertEquals("Missing required option count!", e.getMessage());
+	}
+
+	@Test
+	public void mismatchedRecordsAreRejectedUpFront() {
+		// Option type the component cannot hold
+		assertThrows(IllegalArgumentException.class, () -> new ParamBinder<>(WrongType.class, required));
+		// Required option bound to an Optional, and the other way around
+		assertThrows(IllegalArgumentException.class, () -> new ParamBinder<>(OptionalParams.class, required));
+		assertThrows(IllegalArgumentException.class, () -> new ParamBinder<>(RequiredCount.class, optional));
+		// Boxed primitives are not supported, OptionalLong is
+		assertThrows(IllegalArgumentException.class, () -> new ParamBinder<>(BoxedCount.class, optional));
+		// Component without an option
+		assertThrows(IllegalArgumentException.class,
+				() -> new ParamBinder<>(Params.class, List.of(option(OptionType.INTEGER, "count", true))));
+	}
+}
@@ -0,0 +1,76 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+public class RateLimiterTest {
+	// Long enough that no token is regained while a test runs
+	private final RateLimiter limiter = new RateLimiter(3, Duration.ofHours(1));
+
+	@Test
+	public void burstUpToPermits() {
+		assertTrue(limiter.tryAcquire(1));
+		assertTrue(limiter.tryAcquire(1));
+		assertTrue(limiter.tryAcquire(1));
+		assertFalse(limiter.tryAcquire(1));
+		assertEquals(3, limiter.getAllowed());
+		assertEquals(1, limiter.getLimited());
+	}
+
+	@Test
+	public void purgeDropsOnlyRefilledBuckets() {
+		long[] now = { 0 };
+		RateLimiter limiter = new RateLimiter(3, Duration.ofMinutes(3), () -> now[0]);
+		assertTrue(limiter.tryAcquire(1));
+		for (int i = 0; i < 3; i++) {
+			assertTrue(limiter.tryAcquire(2));
+		}
+
+		// User 1 has refilled, user 2 has regained two of three tokens
+		now[0] = Duration.ofMinutes(2).toNanos();
+		assertTrue(limiter.tryAcquire(3));
+		assertEquals(2, limiter.getTrackedUsers());
+		assertTrue(limiter.tryAcquire(2));
+		assertTrue(limiter.tryAcquire(2));
+		assertFalse(limiter.tryAcquire(2));
+	}
+
+	@Test
+	public void refundGivesBackOneToken() {
+		for (int i = 0; i < 3; i++) {
+			assertTrue(limiter.tryAcquire(1));
+		}
+		limiter.refund(1);
+		assertEquals(2, limiter.getAllowed());
+		assertTrue(limiter.tryAcquire(1));
+		assertFalse(limiter.tryAcquire(1));
+	}
+
+	@Test
+	public void refundNeverCreditsUnusedTokens() {
+		assertTrue(limiter.tryAcquire(1));
+		limiter.refund(1);
+		limiter.refund(1);
+		limiter.refund(2);
+		assertEquals(0, limiter.getAllowed());
+		for (int i = 0; i < 3; i++) {
+			assertTrue(limiter.tryAcquire(1));
+		}
+		assertFalse(limiter.tryAcquire(1));
+	}
+
+	@Test
+	public void usersHaveSeparateBuckets() {
+		for (int i = 0; i < 3; i++) {
+			assertTrue(limiter.tryAcquire(1));
+		}
+		assertFalse(limiter.tryAcquire(1));
+		assertTrue(limiter.tryAcquire(2));
+		assertEquals(2, limiter.getTrackedUsers());
+	}
+}
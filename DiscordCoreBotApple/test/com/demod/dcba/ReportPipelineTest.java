@@ -0,0 +1,91 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.demod.dcba.ReportingPolicy.Destination;
+
+import net.dv8tion.jda.api.entities.MessageEmbed.Field;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.requests.restaction.MessageCreateAction;
+
+public class ReportPipelineTest {
+	// Records the number of embeds in every message sent to it
+	private static MessageChannel channel(List<Integer> messages) {
+		MessageCreateAction action = (MessageCreateAction) Proxy.newProxyInstance(
+				MessageCreateAction.class.getClassLoader(), new Class<?>[] { MessageCreateAction.class },
+				(proxy, method, args) -> null);
+		return (MessageChannel) Proxy.newProxyInstance(MessageChannel.class.getClassLoader(),
+				new Class<?>[] { MessageChannel.class }, (proxy, method, args) -> {
+					if (method.getName().equals("sendMessageEmbeds")) {
+						messages.add(((Collection<?>) args[0]).size());
+					}
+					return action;
+				});
+	}
+
+	private static CommandReporting report(int largeFields) {
+		CommandReporting ret = new CommandReporting("a", null, Instant.now());
+		for (int i = 0; i < largeFields; i++) {
+			ret.addField(new Field("Data", "x".repeat(1000), false));
+		}
+		return ret;
+	}
+
+	private final List<Integer> messages = new CopyOnWriteArrayList<>();
+
+	private ReportPipeline createPipeline(int capacity) {
+		return new ReportPipeline(capacity, 1, () -> Map.of(Destination.CHANNEL, channel(messages)),
+				Optional.empty(), new ReportingPolicy());
+	}
+
+	@Test
+	public void fullQueueDropsReports() throws InterruptedException {
+		ReportPipeline pipeline = createPipeline(1);
+		pipeline.submit(report(0));
+		pipeline.submit(report(0));
+		assertEquals(1, pipeline.getQueued());
+		assertEquals(1, pipeline.getDropped());
+
+		pipeline.start();
+		assertTrue(pipeline.shutdown(Duration.ofSeconds(10)));
+		pipeline.submit(report(0));
+		assertEquals(2, pipeline.getDropped());
+		assertEquals(List.of(1), messages);
+	}
+
+	@Test
+	public void waitingReportsArePackedByCount() throws InterruptedException {
+		ReportPipeline pipeline = createPipeline(100);
+		for (int i = 0; i < 12; i++) {
+			pipeline.submit(report(0));
+		}
+		pipeline.start();
+		assertTrue(pipeline.shutdown(Duration.ofSeconds(10)));
+		assertEquals(List.of(10, 2), messages);
+		assertEquals(12, pipeline.getSent());
+	}
+
+	@Test
+	public void waitingReportsArePackedByLength() throws InterruptedException {
+		ReportPipeline pipeline = createPipeline(100);
+		// Each embed is just over 2000 characters, so only two fit in a message
+		for (int i = 0; i < 5; i++) {
+			pipeline.submit(report(2));
+		}
+		pipeline.start();
+		assertTrue(pipeline.shutdown(Duration.ofSeconds(10)));
+		assertEquals(List.of(2, 2, 1), messages);
+	}
+}
@@ -0,0 +1,69 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.demod.dcba.CommandReporting.Level;
+import com.demod.dcba.ReportingPolicy.Destination;
+
+public class ReportingPolicyTest {
+	private static CommandReporting report(String commandPath, boolean failed) {
+		CommandReporting ret = new CommandReporting("a", null, Instant.now());
+		ret.setCommandPath(commandPath);
+		if (failed) {
+			ret.addException(new IllegalStateException());
+		}
+		return ret;
+	}
+
+	private final ReportingPolicy policy = new ReportingPolicy();
+
+	@Test
+	public void commandRateOverridesLevelRate() {
+		policy.sample(Level.INFO, 0).sample("ping", Level.INFO, 1).sample("pong", Level.ERROR, 0);
+		assertTrue(policy.decide(report("ping", false)));
+		assertFalse(policy.decide(report("pong", false)));
+		assertFalse(policy.decide(report("pong", true)));
+		assertTrue(policy.decide(report("ping", true)));
+		assertEquals(1, policy.getReported(Level.INFO));
+		assertEquals(1, policy.getSampledOut(Level.INFO));
+		assertEquals(1, policy.getReported(Level.ERROR));
+		assertEquals(1, policy.getSampledOut(Level.ERROR));
+	}
+
+	@Test
+	public void decisionIsRecordedOnTheReport() {
+		CommandReporting sampledOut = report("ping", false);
+		policy.sample(Level.INFO, 0).decide(sampledOut);
+		assertFalse(sampledOut.isSampled());
+		assertEquals(0, sampledOut.getSampleRate(), 0);
+
+		CommandReporting sampled = report("ping", true);
+		policy.decide(sampled);
+		assertTrue(sampled.isSampled());
+		assertEquals(1, sampled.getSampleRate(), 0);
+	}
+
+	@Test
+	public void invalidRatesAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> policy.sample(Level.INFO, -0.1));
+		assertThrows(IllegalArgumentException.class, () -> policy.sample(Level.INFO, 1.5));
+		assertThrows(IllegalArgumentException.class, () -> policy.sample("ping", Level.INFO, Double.NaN));
+	}
+
+	@Test
+	public void routesDefaultToEveryDestination() {
+		policy.route(Level.ERROR, Destination.USER).route(Level.DEBUG);
+		assertEquals(EnumSet.allOf(Destination.class), policy.getDestinations(Level.INFO));
+		assertEquals(Set.of(Destination.USER), policy.getDestinations(Level.ERROR));
+		assertTrue(policy.getDestinations(Level.DEBUG).isEmpty());
+	}
+}
@@ -0,0 +1,120 @@
+package com.demod.dcba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import com.demod.dcba.CommandReporting.ExceptionWithBlame;
+
+public class TaskScopeTest {
+	private final CommandReporting reporting = new CommandReporting("test", null, Instant.now());
+
+	private <T> T inHandler(DeadlineScheduler scheduler, CompletableFuture<?> handler, Callable<T> callable)
+			throws Exception {
+		InteractionContext context = new InteractionContext(scheduler, InteractionType.SLASH_COMMAND,
+				Instant.now().plus(Duration.ofHours(1)), reporting, Optional.of(handler));
+		return InteractionContext.call(context, callable);
+	}
+
+	@Test
+	public void cancelledHandlerCancelsQueuedSubtasks() throws Exception {
+		// Subtasks only run when the test says so
+		Deque<Runnable> pending = new ArrayDeque<>();
+		DeadlineScheduler scheduler = new DeadlineScheduler(pending::add, 1);
+		CompletableFuture<Void> handler = new CompletableFuture<>();
+		Future<String> subtask = inHandler(scheduler, handler, () -> TaskScope.open().fork(() -> "done"));
+		assertFalse(subtask.isDone());
+
+		handler.cancel(true);
+		assertTrue(subtask.isCancelled());
+		pending.poll().run();
+		assertTrue(subtask.isCancelled());
+		// Cancellation is not a failure of the subtask
+		assertTrue(reporting.getExceptions().isEmpty());
+	}
+
+	@Test
+	public void failedSubtaskIsReportedWithBlame() throws Exception {
+		DeadlineScheduler scheduler = new DeadlineScheduler(Runnable::run, 1);
+		CompletableFuture<Void> handler = new CompletableFuture<>();
+		inHandler(scheduler, handler, () -> {
+			try (TaskScope scope = TaskScope.open()) {
+				scope.fork("Download", () -> {
+					throw new IllegalStateException("Not found");
+				});
+				scope.fork(() -> "ok");
+				scope.join();
+			}
+			return null;
+		});
+
+		List<ExceptionWithBlame> exceptions = reporting.getExceptionsWithBlame();
+		assertEquals(1, exceptions.size());
+		assertTrue(exceptions.get(0).getException() instanceof IllegalStateException);
+		assertEquals(Optional.of("Download"), exceptions.get(0).getBlame());
+	}
+
+	@Test
+	public void forkAfterCloseOrReturnIsRejected() throws Exception {
+		Deque<Runnable> pending = new ArrayDeque<>();
+		DeadlineScheduler scheduler = new DeadlineScheduler(pending::add, 1);
+		CompletableFuture<Void> handler = new CompletableFuture<>();
+		TaskScope scope = inHandler(scheduler, handler, TaskScope::open);
+
+		handler.complete(null);
+		assertThrows(IllegalStateException.class, () -> scope.fork(() -> "late"));
+		scope.close();
+		assertThrows(IllegalStateException.class, () -> scope.fork(() -> "closed"));
+		while (!pending.isEmpty()) {
+			pending.poll().run();
+		}
+		assertEquals(0, scheduler.getRunning());
+	}
+
+	@Test
+	public void openOutsideOfAHandlerFails() {
+		assertThrows(IllegalStateException.class, TaskScope::open);
+	}
+
+	@Test
+	public void timedOutHandlerInterruptsRunningSubtasks() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		DeadlineScheduler scheduler = new DeadlineScheduler(executor, 1);
+		CompletableFuture<Void> handler = new CompletableFuture<>();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		Future<Void> subtask = inHandler(scheduler, handler, () -> TaskScope.open().fork(() -> {
+			started.countDown();
+			try {
+				new CountDownLatch(1).await();
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return null;
+		}));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		handler.completeExceptionally(new TimeoutException());
+		assertTrue(subtask.isCancelled());
+		assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+		executor.shutdown();
+	}
+}
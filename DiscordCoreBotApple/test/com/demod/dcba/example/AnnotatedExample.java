@@ -0,0 +1,45 @@
+package com.demod.dcba.example;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.demod.dcba.CommandRestriction;
+import com.demod.dcba.DCBA;
+import com.demod.dcba.DiscordBot;
+import com.demod.dcba.Param;
+import com.demod.dcba.SlashCommand;
+import com.demod.dcba.SlashCommandEvent;
+
+import net.dv8tion.jda.api.entities.User;
+
+public class AnnotatedExample {
+
+	@SlashCommand(path = "echo", description = "The bot will repeat what you said, secretly!", //
+			restrictions = CommandRestriction.EPHEMERAL)
+	public static void echo(SlashCommandEvent event, @Param(description = "What to say.") String text) {
+		event.reply(text);
+	}
+
+	private final AtomicInteger greetings = new AtomicInteger();
+
+	@SlashCommand(path = "greet", description = "The bot will greet you, or someone else!")
+	public void greet(SlashCommandEvent event, @Param(description = "Who to greet.") Optional<User> user,
+			@Param(name = "times", description = "How often to say hi.") Optional<Long> repeat) {
+		String hi = "Hi " + user.orElse(event.getUser()).getAsMention() + "!";
+		event.reply(hi.repeat(Math.toIntExact(Math.min(5, repeat.orElse(1L)))) + " (greeting #"
+				+ greetings.incrementAndGet() + ")");
+	}
+
+	public static void main(String[] args) throws IOException {
+		// AnnotatedExampleDispatcher is generated by DiscordCoreBotAppleProcessor
+		DiscordBot bot = DCBA.builder()//
+				.addSlashCommands(AnnotatedExampleDispatcher.definitions(new AnnotatedExample()))//
+				.create();
+
+		bot.startAsync().awaitRunning();
+		System.in.read(); // Wait for <enter>
+		bot.stopAsync().awaitTerminated();
+	}
+
+}
@@ -1,13 +1,19 @@
 package com.demod.dcba.example;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
 
 import com.demod.dcba.DCBA;
 import com.demod.dcba.DiscordBot;
+import com.demod.dcba.SlashCommandDefinition;
+import com.demod.dcba.TaskScope;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Uninterruptibles;
 
@@ -16,6 +22,9 @@ import net.dv8tion.jda.api.interactions.commands.OptionType;
 
 public class CommandTesting {
 
+	private record BusyParams(long seconds) {
+	}
+
 	public static void main(String[] args) throws IOException {
 		DiscordBot bot = DCBA.builder()//
 				.addSlashCommand("params", "The bot will recite the parameters that are recognized.", event -> {
@@ -45,11 +54,33 @@ public class CommandTesting {
 				//
 				//
 				.addSlashCommand("busy", "Simulate a command that takes some time to finish.", event -> {
-					long seconds = event.getParamLong("seconds");
+					long seconds = event.bindParams(BusyParams.class).seconds();
 					Uninterruptibles.sleepUninterruptibly(seconds, TimeUnit.SECONDS);
 					event.reply("Waited " + seconds + " seconds!");
 				})//
-				.withParam(OptionType.INTEGER, "seconds", "Seconds to wait before the command is completed.")
+				.withParam(OptionType.INTEGER, "seconds", "Seconds to wait before the command is completed.")//
+				.withParams(BusyParams.class)//
+				.concurrency(2)//
+				.queueLimit(3)
+				//
+				//
+				.addSlashCommand("fan-out", "Simulate work split across parallel subtasks.", event -> {
+					long seconds = event.getParamLong("seconds");
+					List<Future<Long>> parts = new ArrayList<>();
+					try (TaskScope scope = event.openScope()) {
+						for (int i = 0; i < 4; i++) {
+							long part = i;
+							parts.add(scope.fork("Part " + part, () -> {
+								Thread.sleep(seconds * 1000);
+								return part;
+							}));
+						}
+						scope.join();
+					}
+					event.reply("Finished " + parts.stream().filter(f -> f.state() == Future.State.SUCCESS).count()
+							+ " parts in parallel!");
+				})//
+				.withParam(OptionType.INTEGER, "seconds", "Seconds each part takes.")
 				//
 				//
 				.addSlashCommand("multi-reply", "Replies back with multiple messages.", event -> {
@@ -76,13 +107,17 @@ public class CommandTesting {
 								event.replyIntegers(ImmutableList.of());
 							}
 						})//
-				.withAutoParam(OptionType.INTEGER, "number", "Number to auto-complete about.")
+				.withAutoParam(OptionType.INTEGER, "number", "Number to auto-complete about.")//
+				.cacheAutoComplete(1000, Duration.ofMinutes(5), false)
 				//
 				//
 				.create();
 
 		bot.startAsync().awaitRunning();
 		System.in.read(); // Wait for <enter>
+		bot.putCommand(new SlashCommandDefinition("hello", "Added while the bot is running.",
+				event -> event.reply("Hello!"))).join();
+		System.in.read(); // Wait for <enter>
 		bot.stopAsync().awaitTerminated();
 	}
 
@@ -0,0 +1,335 @@
+package com.demod.dcba.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Generates a {@code <Class>Dispatcher} for every class with
+ * {@code @SlashCommand} methods. The dispatcher builds the
+ * {@code SlashCommandDefinition}s at compile time and routes each command to
+ * its method through a switch on the command's index, so no reflection or
+ * per-command lambda class is needed at runtime.
+ */
+@SupportedAnnotationTypes(SlashCommandProcessor.SLASH_COMMAND)
+public class SlashCommandProcessor extends AbstractProcessor {
+
+	private static class Command {
+		private final ExecutableElement method;
+		private final String path;
+		private final String description;
+		private final List<String> restrictions;
+		private final List<String> arguments = new ArrayList<>();
+		private final List<String> options = new ArrayList<>();
+
+		private Command(ExecutableElement method, String path, String description, List<String> restrictions) {
+			this.method = method;
+			this.path = path;
+			this.description = description;
+			this.restrictions = restrictions;
+		}
+	}
+
+	private static class ParamType {
+		private final String optionType;
+		private final String getter;
+		private final String optGetter;
+
+		private ParamType(String optionType, String getter, String optGetter) {
+			this.optionType = optionType;
+			this.getter = getter;
+			this.optGetter = optGetter;
+		}
+	}
+
+	static final String SLASH_COMMAND = "com.demod.dcba.SlashCommand";
+	private static final String PARAM = "com.demod.dcba.Param";
+	private static final String SLASH_COMMAND_EVENT = "com.demod.dcba.SlashCommandEvent";
+
+	// Discord rejects the whole command list at startup if an option breaks these
+	private static final Pattern OPTION_NAME = Pattern.compile("[\\p{L}\\p{N}_-]{1,32}");
+	private static final int MAX_OPTION_DESCRIPTION = 100;
+
+	private static final Map<String, ParamType> PARAM_TYPES = new LinkedHashMap<>();
+	static {
+		PARAM_TYPES.put("long", new ParamType("INTEGER", "event.getParamLong(%s)", null));
+		PARAM_TYPES.put("int", new ParamType("INTEGER", "Math.toIntExact(event.getParamLong(%s))", null));
+		PARAM_TYPES.put("double", new ParamType("NUMBER", "event.getParamDouble(%s)", null));
+		PARAM_TYPES.put("boolean", new ParamType("BOOLEAN", "event.getParamBoolean(%s)", null));
+		PARAM_TYPES.put("java.lang.Long", new ParamType("INTEGER", null, "event.optParamLong(%s)"));
+		PARAM_TYPES.put("java.lang.Double", new ParamType("NUMBER", null, "event.optParamDouble(%s)"));
+		PARAM_TYPES.put("java.lang.Boolean", new ParamType("BOOLEAN", null, "event.optParamBoolean(%s)"));
+		PARAM_TYPES.put("java.lang.String",
+				new ParamType("STRING", "event.getParamString(%s)", "event.optParamString(%s)"));
+		PARAM_TYPES.put("net.dv8tion.jda.api.entities.User",
+				new ParamType("USER", "event.getParamUser(%s)", "event.optParamUser(%s)"));
+		PARAM_TYPES.put("net.dv8tion.jda.api.entities.Member",
+				new ParamType("USER", "event.getParamMember(%s)", "event.optParamMember(%s)"));
+		PARAM_TYPES.put("net.dv8tion.jda.api.entities.Role",
+				new ParamType("ROLE", "event.getParamRole(%s)", "event.optParamRole(%s)"));
+		PARAM_TYPES.put("net.dv8tion.jda.api.entities.channel.unions.GuildChannelUnion",
+				new ParamType("CHANNEL", "event.getParamChannel(%s)", "event.optParamChannel(%s)"));
+		PARAM_TYPES.put("net.dv8tion.jda.api.entities.IMentionable",
+				new ParamType("MENTIONABLE", "event.getParamMentionable(%s)", "event.optParamMentionable(%s)"));
+		PARAM_TYPES.put("net.dv8tion.jda.api.entities.Message.Attachment",
+				new ParamType("ATTACHMENT", "event.getAttachment(%s)", "event.optParamAttachment(%s)"));
+	}
+
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : s.toCharArray()) {
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private Messager messager;
+
+	private Optional<AnnotationMirror> findAnnotation(Element element, String annotation) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName()
+					.contentEquals(annotation)) {
+				return Optional.of(mirror);
+			}
+		}
+		return Optional.empty();
+	}
+
+	private void generate(TypeElement type, List<Command> commands) throws IOException {
+		String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		StringBuilder simpleName = new StringBuilder(type.getSimpleName());
+		for (Element e = type.getEnclosingElement(); !(e instanceof PackageElement); e = e.getEnclosingElement()) {
+			simpleName.insert(0, e.getSimpleName() + "_");
+		}
+		String dispatcherName = simpleName + "Dispatcher";
+		String targetName = type.getQualifiedName().toString();
+
+		try (PrintWriter pw = new PrintWriter(processingEnv.getFiler()
+				.createSourceFile((packageName.isEmpty() ? "" : packageName + ".") + dispatcherName, type)
+				.openWriter())) {
+			if (!packageName.isEmpty()) {
+				pw.println("package " + packageName + ";");
+				pw.println();
+			}
+			pw.println("import java.util.ArrayList;");
+			pw.println("import java.util.List;");
+			pw.println();
+			pw.println("import com.demod.dcba.CommandRestriction;");
+			pw.println("import com.demod.dcba.SlashCommandDefinition;");
+			pw.println("import com.demod.dcba.SlashCommandEvent;");
+			pw.println("import com.demod.dcba.SlashCommandHandler;");
+			pw.println("import com.demod.dcba.SlashCommandOptionDefinition;");
+			pw.println();
+			pw.println("import net.dv8tion.jda.api.interactions.commands.OptionType;");
+			pw.println();
+			pw.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+			pw.println("public final class " + dispatcherName + " implements SlashCommandHandler {");
+			pw.println();
+			pw.println("\tpublic static List<SlashCommandDefinition> definitions(" + targetName + " target) {");
+			pw.println("\t\tList<SlashCommandDefinition> definitions = new ArrayList<>(" + commands.size() + ");");
+			pw.println("\t\tSlashCommandDefinition definition;");
+			for (int i = 0; i < commands.size(); i++) {
+				Command command = commands.get(i);
+				pw.println("\t\tdefinition = new SlashCommandDefinition(" + quote(command.path) + ", "
+						+ quote(command.description) + ", new " + dispatcherName + "(target, " + i + "));");
+				for (String option : command.options) {
+					pw.println("\t\tdefinition.addOption(" + option + ");");
+				}
+				for (String restriction : command.restrictions) {
+					pw.println("\t\tdefinition.setRestriction(CommandRestriction." + restriction + ");");
+				}
+				pw.println("\t\tdefinitions.add(definition);");
+			}
+			pw.println("\t\treturn definitions;");
+			pw.println("\t}");
+			pw.println();
+			pw.println("\tprivate final " + targetName + " target;");
+			pw.println("\tprivate final int index;");
+			pw.println();
+			pw.println("\tprivate " + dispatcherName + "(" + targetName + " target, int index) {");
+			pw.println("\t\tthis.target = target;");
+			pw.println("\t\tthis.index = index;");
+			pw.println("\t}");
+			pw.println();
+			pw.println("\t@Override");
+			pw.println("\tpublic void handleCommand(SlashCommandEvent event) throws Exception {");
+			pw.println("\t\tswitch (index) {");
+			for (int i = 0; i < commands.size(); i++) {
+				Command command = commands.get(i);
+				String receiver = command.method.getModifiers().contains(Modifier.STATIC) ? targetName : "target";
+				pw.println("\t\tcase " + i + ":");
+				pw.println("\t\t\t" + receiver + "." + command.method.getSimpleName() + "("
+						+ String.join(", ", command.arguments) + ");");
+				pw.println("\t\t\tbreak;");
+			}
+			pw.println("\t\tdefault:");
+			pw.println("\t\t\tthrow new IllegalStateException(\"Unknown command index \" + index);");
+			pw.println("\t\t}");
+			pw.println("\t}");
+			pw.println("}");
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T getValue(AnnotationMirror mirror, String name) {
+		for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv.getElementUtils()
+				.getElementValuesWithDefaults(mirror).entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				return (T) entry.getValue().getValue();
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	private boolean isType(TypeMirror type, String name) {
+		return type.getKind() == TypeKind.DECLARED
+				&& ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(name);
+	}
+
+	private Optional<Command> parse(ExecutableElement method) {
+		if (method.getModifiers().contains(Modifier.PRIVATE)) {
+			messager.printMessage(Kind.ERROR, "@SlashCommand methods must not be private", method);
+			return Optional.empty();
+		}
+
+		AnnotationMirror annotation = findAnnotation(method, SLASH_COMMAND).get();
+		List<String> restrictions = new ArrayList<>();
+		for (AnnotationValue value : this.<List<? extends AnnotationValue>>getValue(annotation, "restrictions")) {
+			restrictions.add(((VariableElement) value.getValue()).getSimpleName().toString());
+		}
+		Command command = new Command(method, getValue(annotation, "path"), getValue(annotation, "description"),
+				restrictions);
+
+		boolean valid = true;
+		for (VariableElement parameter : method.getParameters()) {
+			TypeMirror type = parameter.asType();
+			if (isType(type, SLASH_COMMAND_EVENT)) {
+				command.arguments.add("event");
+				continue;
+			}
+
+			String name = parameter.getSimpleName().toString();
+			String description = name;
+			Optional<AnnotationMirror> param = findAnnotation(parameter, PARAM);
+			if (param.isPresent()) {
+				String customName = getValue(param.get(), "name");
+				String customDescription = getValue(param.get(), "description");
+				name = customName.isEmpty() ? name : customName;
+				description = customDescription.isEmpty() ? name : customDescription;
+			}
+			if (!OPTION_NAME.matcher(name).matches() || !name.equals(name.toLowerCase(Locale.ROOT))) {
+				messager.printMessage(Kind.ERROR, "Option name \"" + name
+						+ "\" must be 1 to 32 lowercase letters, digits, - or _, see @Param(name = ...)", parameter);
+				valid = false;
+				continue;
+			}
+			if (description.length() > MAX_OPTION_DESCRIPTION) {
+				messager.printMessage(Kind.ERROR,
+						"Option description must be at most " + MAX_OPTION_DESCRIPTION + " characters", parameter);
+				valid = false;
+				continue;
+			}
+
+			boolean required = true;
+			if (isType(type, "java.util.Optional") && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+				required = false;
+				type = ((DeclaredType) type).getTypeArguments().get(0);
+			}
+			String typeName = type.getKind().isPrimitive() ? type.toString()
+					: type.getKind() == TypeKind.DECLARED
+							? ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString()
+							: type.toString();
+			ParamType paramType = PARAM_TYPES.get(typeName);
+			String getter = paramType == null ? null : required ? paramType.getter : paramType.optGetter;
+			if (getter == null) {
+				messager.printMessage(Kind.ERROR,
+						"Unsupported @SlashCommand parameter type " + parameter.asType(), parameter);
+				valid = false;
+				continue;
+			}
+
+			command.arguments.add(String.format(getter, quote(name)));
+			command.options.add("new SlashCommandOptionDefinition(OptionType." + paramType.optionType + ", "
+					+ quote(name) + ", " + quote(description) + ", " + required + ", false)");
+		}
+		return valid ? Optional.of(command) : Optional.empty();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		messager = processingEnv.getMessager();
+		TypeElement annotation = processingEnv.getElementUtils().getTypeElement(SLASH_COMMAND);
+		if (annotation == null) {
+			return false;
+		}
+
+		Map<TypeElement, List<Command>> commandsByType = new LinkedHashMap<>();
+		for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+			if (element.getKind() != ElementKind.METHOD) {
+				continue;
+			}
+			TypeElement type = (TypeElement) element.getEnclosingElement();
+			if (type.getNestingKind() != NestingKind.TOP_LEVEL && !type.getModifiers().contains(Modifier.STATIC)) {
+				messager.printMessage(Kind.ERROR, "@SlashCommand methods must be in a top level or static class",
+						element);
+				continue;
+			}
+			List<Command> commands = commandsByType.computeIfAbsent(type, k -> new ArrayList<>());
+			parse((ExecutableElement) element).ifPresent(commands::add);
+		}
+
+		for (Entry<TypeElement, List<Command>> entry : commandsByType.entrySet()) {
+			try {
+				generate(entry.getKey(), entry.getValue());
+			} catch (IOException e) {
+				messager.printMessage(Kind.ERROR, "Failed to generate dispatcher: " + e.getMessage(), entry.getKey());
+			}
+		}
+		return true;
+	}
+}